@@ -2,13 +2,21 @@ plugins {
     java
     id("org.springframework.boot") version "3.2.0"
     id("io.spring.dependency-management") version "1.1.4"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
+// Spring AOT для JVM (входит в плагин Spring Boot): processAot генерирует определения бинов при сборке,
+// они попадают в app.jar и используются только при запуске с -Dspring.aot.enabled=true
+apply(plugin = "org.springframework.boot.aot")
+
 group = "com.example"
 version = "0.0.1-SNAPSHOT"
 
 java {
-    sourceCompatibility = JavaVersion.VERSION_17
+    // Java 21 нужна для виртуальных потоков (spring.threads.virtual.enabled)
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
 }
 
 configurations {
@@ -27,6 +35,8 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-websocket")
     implementation("org.springframework.boot:spring-boot-starter-validation")
     implementation("org.springframework.boot:spring-boot-starter-data-jpa")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("org.springframework.boot:spring-boot-starter-data-r2dbc")
     
     // EclipseLink
     implementation("org.eclipse.persistence:eclipselink:4.0.2")
@@ -34,11 +44,17 @@ dependencies {
     
     // PostgreSQL
     implementation("org.postgresql:postgresql:42.7.7")
+    runtimeOnly("org.postgresql:r2dbc-postgresql")
     
     // JSON processing
     implementation("com.fasterxml.jackson.core:jackson-databind")
     implementation("com.fasterxml.jackson.datatype:jackson-datatype-jsr310")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
     
+    // Metrics
+    implementation("io.micrometer:micrometer-registry-prometheus")
+
     // Environment variables support
     implementation("me.paulschwarz:spring-dotenv:4.0.0")
     
@@ -64,9 +80,137 @@ tasks {
         enabled = true
         archiveFileName.set("app.jar")
         duplicatesStrategy = DuplicatesStrategy.EXCLUDE
+        manifest {
+            attributes("Implementation-Version" to project.version)
+        }
     }
 }
 
+// Тесты с тегом database работают с локальной PostgreSQL профиля dev: gradle test -PdatabaseTests
 tasks.withType<Test> {
-    useJUnitPlatform()
+    useJUnitPlatform {
+        if (!project.hasProperty("databaseTests")) {
+            excludeTags("database")
+        }
+    }
+}
+
+// Статическое связывание (weaving) сущностей EclipseLink сразу после компиляции: ленивые @OneToOne,
+// отслеживание изменений по атрибутам и fetch groups. Классы model переписываются на месте, повторное
+// связывание уже связанных классов ничего не меняет. Сборка без связывания для сравнения: -PentityWeaving=false
+val entityWeaving = (findProperty("entityWeaving") as String?)?.toBoolean() ?: true
+tasks.named<JavaCompile>("compileJava") {
+    val weavingInfo = file("src/main/weaving")
+    val weavingClasspath = configurations.runtimeClasspath
+    val classesDir = destinationDirectory
+    inputs.dir(weavingInfo)
+    inputs.property("entityWeaving", entityWeaving)
+    if (entityWeaving) {
+        doLast {
+            val classes = classesDir.get().asFile
+            project.javaexec {
+                classpath(weavingClasspath, classes)
+                mainClass.set("org.eclipse.persistence.tools.weaving.jpa.StaticWeave")
+                args("-persistenceinfo", weavingInfo.absolutePath, "-loglevel", "WARNING",
+                        classes.absolutePath, classes.absolutePath)
+            }
+        }
+    }
+}
+
+// AOT вычисляет условия (@ConditionalOnProperty, @Profile) один раз при сборке по окружению и .env сборки:
+// springdoc включается по OPENAPI_ENABLED, виртуальные потоки - по VIRTUAL_THREADS_ENABLED. Значения свойств
+// (адреса баз, пулы, профиль для application-*.properties) по-прежнему читаются при запуске.
+// Другой профиль для вычисления условий: -PaotProfile=prod
+val aotProfile = findProperty("aotProfile") as String?
+tasks.named<JavaExec>("processAot") {
+    inputs.property("aotProfile", aotProfile ?: "")
+    aotProfile?.let { args("--spring.profiles.active=$it") }
+}
+
+// Быстрый старт: AppCDS-архив классов, загруженных при старте. CDS архивирует только классы из обычных jar
+// на classpath, поэтому рядом с app.jar собирается развёрнутый вариант: тонкий build/cds/app.jar (классы после
+// связывания и AOT, Class-Path на lib/) и lib/ с зависимостями. gradle cdsArchive делает обучающий запуск:
+// контекст поднимается до конца refresh (EclipseLink, пулы - нужна база из .env) и JVM пишет app.jsa.
+// Миграции в обучающем запуске выключены (city.migrations.enabled=false): сборка не меняет схему базы.
+// Другая база для обучения, например одноразовый контейнер: gradle cdsArchive -PcdsEnvFile=.env.training
+// Запуск: cd build/cds && java -XX:SharedArchiveFile=app.jsa -Dspring.aot.enabled=true -jar app.jar
+// Архив годится только для той же версии JDK и того же набора jar: после изменения зависимостей - пересобрать
+val cdsDir = layout.buildDirectory.dir("cds")
+val productionClasspath = configurations.named("productionRuntimeClasspath")
+
+val cdsLibs by tasks.registering(Sync::class) {
+    from(productionClasspath)
+    into(cdsDir.map { it.dir("lib") })
+}
+
+val cdsJar by tasks.registering(Jar::class) {
+    group = "build"
+    description = "Assembles build/cds: a thin app.jar with AOT-processed classes and its dependencies in lib/"
+    dependsOn(cdsLibs)
+    archiveFileName.set("app.jar")
+    destinationDirectory.set(cdsDir)
+    duplicatesStrategy = DuplicatesStrategy.EXCLUDE
+    from(sourceSets.main.map { it.output })
+    from(sourceSets.named("aot").map { it.output })
+    doFirst {
+        manifest.attributes(
+                "Main-Class" to "com.example.citymanagement.CityManagementApplication",
+                "Implementation-Version" to project.version,
+                "Class-Path" to productionClasspath.get().files.joinToString(" ") { "lib/${it.name}" })
+    }
+}
+
+tasks.register<Exec>("cdsArchive") {
+    group = "build"
+    description = "Training run of build/cds/app.jar that dumps the AppCDS archive build/cds/app.jsa"
+    dependsOn(cdsJar)
+    val java = javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(21)) }
+    val envFile = file(findProperty("cdsEnvFile") as String? ?: ".env")
+    workingDir(cdsDir)
+    outputs.file(cdsDir.map { it.file("app.jsa") })
+    doFirst {
+        // spring-dotenv ищет .env в рабочем каталоге, а обучающий запуск идёт в build/cds
+        if (envFile.exists()) {
+            envFile.readLines().map { it.trim() }
+                    .filter { it.isNotEmpty() && !it.startsWith("#") && it.contains('=') }
+                    .forEach { environment(it.substringBefore('=').trim(), it.substringAfter('=').trim()) }
+        }
+        // Тот же classpath (-jar app.jar из build/cds), что и при запуске с архивом; выход сразу после refresh
+        commandLine(java.get().executablePath.asFile.absolutePath,
+                "-XX:ArchiveClassesAtExit=app.jsa", "-Dspring.aot.enabled=true", "-Dspring.context.exit=onRefresh",
+                "-Dcity.migrations.enabled=false",
+                "-jar", "app.jar")
+    }
+}
+
+// Нагрузочный тест запущенного приложения (см. com.example.citymanagement.loadtest.LoadTest):
+// gradle loadTest -PloadTestArgs="generate --cities=1000000"
+// gradle loadTest -PloadTestArgs="run --threads=32 --duration=60 --subscribers=50"
+val loadtest: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().compileClasspath
+    runtimeClasspath += output + compileClasspath + sourceSets.main.get().runtimeClasspath
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Generates a synthetic dataset or runs a mixed workload against a running application"
+    classpath = loadtest.runtimeClasspath
+    mainClass.set("com.example.citymanagement.loadtest.LoadTest")
+    workingDir = rootDir
+    args = (findProperty("loadTestArgs") as String? ?: "run").split(" ")
+}
+
+// Микробенчмарки: gradle jmh (результаты в build/results/jmh/results.json)
+jmh {
+    jmhVersion.set("1.37")
+    benchmarkMode.set(listOf("thrpt", "sample"))
+    timeUnit.set("ms")
+    profilers.set(listOf("gc"))
+    resultFormat.set("JSON")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // Выбор бенчмарков: gradle jmh -PjmhIncludes=Serialization
+    (findProperty("jmhIncludes") as String?)?.let { includes.set(listOf(it)) }
 }
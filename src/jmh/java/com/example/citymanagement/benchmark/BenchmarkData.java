@@ -0,0 +1,50 @@
+package com.example.citymanagement.benchmark;
+
+import com.example.citymanagement.model.City;
+import com.example.citymanagement.model.Climate;
+import com.example.citymanagement.model.Coordinates;
+import com.example.citymanagement.model.Human;
+import com.example.citymanagement.model.StandardOfLiving;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Детерминированные тестовые города для бенчмарков.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static List<City> cities(int count, long seed) {
+        Random random = new Random(seed);
+        List<City> cities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            City city = new City();
+            city.setId((long) i + 1);
+            city.setName("City " + i);
+            Coordinates coordinates = new Coordinates(random.nextFloat() * 1000, random.nextInt(10000) - 900);
+            coordinates.setId((long) i + 1);
+            city.setCoordinates(coordinates);
+            city.setCreationDate(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i));
+            city.setArea(1 + random.nextInt(100_000));
+            city.setPopulation(1 + random.nextInt(20_000_000));
+            city.setEstablishmentDate(LocalDateTime.of(1000 + random.nextInt(1000), 1, 1, 0, 0));
+            city.setCapital(random.nextInt(20) == 0);
+            city.setMetersAboveSeaLevel((long) random.nextInt(3000));
+            city.setCarCode(1L + random.nextInt(1000));
+            city.setClimate(Climate.values()[random.nextInt(Climate.values().length)]);
+            city.setStandardOfLiving(StandardOfLiving.values()[random.nextInt(StandardOfLiving.values().length)]);
+            if (random.nextBoolean()) {
+                Human governor = new Human(1.5f + random.nextFloat() * 0.5f);
+                governor.setId((long) random.nextInt(100) + 1);
+                city.setGovernor(governor);
+            }
+            cities.add(city);
+        }
+        return cities;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.citymanagement.benchmark;
+
+import com.example.citymanagement.CityManagementApplication;
+import com.example.citymanagement.dto.CityCursor;
+import com.example.citymanagement.dto.CityCursorPage;
+import com.example.citymanagement.model.City;
+import com.example.citymanagement.model.Coordinates;
+import com.example.citymanagement.model.Human;
+import com.example.citymanagement.service.CityImportService;
+import com.example.citymanagement.service.CityService;
+import com.example.citymanagement.service.HumanService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.eclipse.persistence.jpa.JpaEntityManagerFactory;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Запросы страниц, поиска и сохранения города через полный контекст приложения.
+ * Нужна локальная PostgreSQL из профиля dev (переменные DB_DEV_* или файл .env);
+ * при нехватке данных таблица дополняется до datasetSize городов через импорт.
+ * После каждой итерации печатается число SQL-запросов на операцию: сравнение сборок
+ * со связыванием сущностей и без него (-PentityWeaving=false) см. в README.
+ */
+@State(Scope.Benchmark)
+public class CityRepositoryBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"10000"})
+    private int datasetSize;
+
+    @Param({"0", "250"})
+    private int page;
+
+    // Городов в единице работы для flushPageChange: при отложенном отслеживании flush сравнивает снимки их всех
+    private static final int FLUSH_PAGE_SIZE = 100;
+
+    private ConfigurableApplicationContext context;
+    private CityService cityService;
+    private String cursor;
+    private City cityToSave;
+    private Long coordinatesId;
+    private Long governorId;
+    private Cache sharedCache;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private int flushCounter;
+
+    private final LongAdder sqlStatements = new LongAdder();
+    private final LongAdder operations = new LongAdder();
+    // Поток JMH: запросы фоновых задач приложения в счётчик не попадают
+    private volatile Thread benchmarkThread;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(CityManagementApplication.class)
+                .properties("server.port=0",
+                        "spring.profiles.active=dev",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.eclipselink.logging.level=WARNING")
+                .run();
+        cityService = context.getBean(CityService.class);
+
+        long missing = datasetSize - cityService.countCities();
+        if (missing > 0) {
+            ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+            StringBuilder ndjson = new StringBuilder();
+            for (City city : BenchmarkData.cities((int) missing, 7)) {
+                city.setId(null);
+                city.getCoordinates().setId(null);
+                city.setGovernor(null);
+                ndjson.append(objectMapper.writeValueAsString(city)).append('\n');
+            }
+            context.getBean(CityImportService.class)
+                    .importNdjson(new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)));
+        }
+
+        // Курсор на ту же глубину, что и offset-страница page
+        List<City> offsetPage = cityService.getCitiesPage(page, PAGE_SIZE, "id", "asc").getContent();
+        if (page > 0 && !offsetPage.isEmpty()) {
+            Long lastId = offsetPage.get(0).getId() - 1;
+            cursor = new CityCursor("id", "asc", lastId, String.valueOf(lastId)).encode();
+        }
+
+        Human governor = context.getBean(HumanService.class).saveHuman(new Human(1.8f));
+        cityToSave = cityService.getCitiesPage(0, 1, "id", "asc").getContent().get(0);
+        Human governorRef = new Human();
+        governorRef.setId(governor.getId());
+        cityToSave.setGovernor(governorRef);
+        coordinatesId = cityToSave.getCoordinates().getId();
+        governorId = governor.getId();
+
+        EntityManagerFactory entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        sharedCache = entityManagerFactory.getCache();
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        entityManagerFactory.unwrap(JpaEntityManagerFactory.class).getServerSession().getEventManager()
+                .addListener(new SessionEventAdapter() {
+                    @Override
+                    public void postExecuteCall(SessionEvent event) {
+                        if (Thread.currentThread() == benchmarkThread) {
+                            sqlStatements.increment();
+                        }
+                    }
+                });
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCounters() {
+        benchmarkThread = Thread.currentThread();
+        sqlStatements.reset();
+        operations.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCounters() {
+        long ops = operations.sum();
+        if (ops > 0) {
+            System.out.printf("%n%.2f SQL statements per operation (%d operations)%n",
+                    (double) sqlStatements.sum() / ops, ops);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<City> offsetPage() {
+        operations.increment();
+        return cityService.getCitiesPage(page, PAGE_SIZE, "id", "asc");
+    }
+
+    // Таблица на странице списка (GET /api/cities?view=summary): fetch group из столбцов таблицы
+    @Benchmark
+    public Page<City> listViewPage() {
+        operations.increment();
+        return cityService.getCityListPage(null, page, PAGE_SIZE, "id", "asc");
+    }
+
+    @Benchmark
+    public CityCursorPage keysetPage() {
+        operations.increment();
+        return cityService.getCitiesAfter(cursor, PAGE_SIZE, "id", "asc");
+    }
+
+    @Benchmark
+    public Page<City> searchByName() {
+        operations.increment();
+        return cityService.searchCities("ity 12", page, PAGE_SIZE, "id", "asc");
+    }
+
+    // Проверка существования в PUT/DELETE: без связывания вместе с городом загружаются координаты и губернатор.
+    // Город, его координаты и губернатор вытесняются из общего кэша, иначе findById не доходит до базы
+    @Benchmark
+    public boolean findCityById() {
+        operations.increment();
+        sharedCache.evict(City.class, cityToSave.getId());
+        sharedCache.evict(Coordinates.class, coordinatesId);
+        sharedCache.evict(Human.class, governorId);
+        return cityService.getCityById(cityToSave.getId()).isPresent();
+    }
+
+    // Путь PUT /api/cities/{id}: загрузка губернатора по id и merge города. Как клиент, следующий вызов
+    // отправляет версию из ответа: со старой версией saveCity отвечал бы конфликтом
+    @Benchmark
+    public City saveCityWithGovernor() {
+        operations.increment();
+        City saved = cityService.saveCity(cityToSave);
+        cityToSave.setVersion(saved.getVersion());
+        return saved;
+    }
+
+    // CPU на flush: страница городов в единице работы, изменено одно поле одного города. Транзакция откатывается
+    @Benchmark
+    public void flushPageChange() {
+        operations.increment();
+        int index = flushCounter++ % FLUSH_PAGE_SIZE;
+        transactionTemplate.executeWithoutResult(status -> {
+            List<City> cities = entityManager.createQuery("SELECT c FROM City c JOIN FETCH c.coordinates "
+                            + "LEFT JOIN FETCH c.governor ORDER BY c.id", City.class)
+                    .setMaxResults(FLUSH_PAGE_SIZE)
+                    .getResultList();
+            City city = cities.get(index % cities.size());
+            city.setPopulation(city.getPopulation() % 1_000_000 + 1);
+            entityManager.flush();
+            status.setRollbackOnly();
+        });
+    }
+}
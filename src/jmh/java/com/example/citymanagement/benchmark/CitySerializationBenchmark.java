@@ -0,0 +1,52 @@
+package com.example.citymanagement.benchmark;
+
+import com.example.citymanagement.model.City;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Сериализация страницы городов в том виде, в котором её отдаёт GET /api/cities.
+ */
+@State(Scope.Benchmark)
+public class CitySerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int pageSize;
+
+    private ObjectMapper objectMapper;
+    private Map<String, Object> response;
+
+    @Setup
+    public void setUp() {
+        // Те же настройки, что spring.jackson.* в application.properties
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        List<City> cities = BenchmarkData.cities(pageSize, 42);
+        response = new HashMap<>();
+        response.put("cities", cities);
+        response.put("currentPage", 0);
+        response.put("totalPages", 100);
+        response.put("totalElements", 100L * pageSize);
+        response.put("sortBy", "id");
+        response.put("sortDir", "asc");
+        response.put("size", pageSize);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+}
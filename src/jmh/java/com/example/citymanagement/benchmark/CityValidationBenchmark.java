@@ -0,0 +1,53 @@
+package com.example.citymanagement.benchmark;
+
+import com.example.citymanagement.model.City;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Set;
+
+/**
+ * Bean validation города, как при POST/PUT /api/cities и импорте.
+ */
+@State(Scope.Benchmark)
+public class CityValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private City validCity;
+    private City invalidCity;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validCity = BenchmarkData.cities(1, 42).get(0);
+
+        invalidCity = BenchmarkData.cities(1, 43).get(0);
+        invalidCity.setName("");
+        invalidCity.setArea(-1);
+        invalidCity.setCarCode(5000L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<City>> validateValidCity() {
+        return validator.validate(validCity);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<City>> validateInvalidCity() {
+        return validator.validate(invalidCity);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.citymanagement.benchmark;
+
+import com.example.citymanagement.model.City;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Страница GET /api/cities в JSON, CBOR и Smile: CPU на кодирование и разбор, а также размер на проводе.
+ * Размеры (без сжатия и после gzip) печатаются в начале каждого прогона.
+ */
+@State(Scope.Benchmark)
+public class CityWireFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"10", "100", "1000"})
+    private int pageSize;
+
+    private ObjectMapper objectMapper;
+    private Map<String, Object> response;
+    private byte[] encoded;
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record PageBody(List<City> cities, int currentPage, int totalPages, long totalElements) {
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        JsonFactory factory = switch (format) {
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> new JsonFactory();
+        };
+        // Те же настройки, что spring.jackson.* в application.properties
+        objectMapper = new ObjectMapper(factory)
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        response = new HashMap<>();
+        response.put("cities", BenchmarkData.cities(pageSize, 42));
+        response.put("currentPage", 0);
+        response.put("totalPages", 100);
+        response.put("totalElements", 100L * pageSize);
+        response.put("sortBy", "id");
+        response.put("sortDir", "asc");
+        response.put("size", pageSize);
+
+        encoded = objectMapper.writeValueAsBytes(response);
+        System.out.printf("%n%s, %d cities: %d bytes, %d bytes gzip%n",
+                format, pageSize, encoded.length, gzip(encoded).length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] encodeGzip() throws IOException {
+        return gzip(objectMapper.writeValueAsBytes(response));
+    }
+
+    @Benchmark
+    public PageBody decode() throws IOException {
+        return objectMapper.readValue(encoded, PageBody.class);
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(data);
+        }
+        return buffer.toByteArray();
+    }
+}
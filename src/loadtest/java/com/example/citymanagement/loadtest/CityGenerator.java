@@ -0,0 +1,81 @@
+package com.example.citymanagement.loadtest;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Синтетические города с правдоподобными распределениями:
+ * население по закону Ципфа, площадь коррелирует с населением, климат и уровень жизни - с заданными долями.
+ */
+class CityGenerator {
+
+    private static final String[] CLIMATES = {"OCEANIC", "TROPICAL_SAVANNA", "RAIN_FOREST"};
+    private static final double[] CLIMATE_WEIGHTS = {0.5, 0.3, 0.2};
+
+    private static final String[] STANDARDS = {"HIGH", "LOW", "VERY_LOW"};
+    private static final double[] STANDARD_WEIGHTS = {0.25, 0.45, 0.30};
+
+    private static final String[] NAME_PARTS = {
+            "New", "Old", "North", "South", "Port", "Fort", "Lake", "Saint", "Upper", "Lower",
+            "ville", "burg", "grad", "ford", "haven", "polis", "stad", "mouth", "field", "ton"};
+
+    private final Random random;
+    private final List<Long> governorIds;
+
+    CityGenerator(long seed, List<Long> governorIds) {
+        this.random = new Random(seed);
+        this.governorIds = governorIds;
+    }
+
+    Map<String, Object> next(long index) {
+        Map<String, Object> city = new LinkedHashMap<>();
+        city.put("name", name(index));
+        city.put("coordinates", Map.of(
+                "x", (float) (random.nextGaussian() * 300),
+                "y", (long) (random.nextGaussian() * 300)));
+
+        // Ранг по Ципфу: немного крупных городов и много мелких
+        int rank = 1 + random.nextInt(100_000);
+        int population = Math.max(1, (int) (15_000_000 / Math.pow(rank, 0.9)));
+        city.put("population", population);
+        city.put("area", Math.max(1, (int) (population / (500 + random.nextInt(5000))) + random.nextInt(50)));
+
+        city.put("establishmentDate", LocalDateTime.of(800 + random.nextInt(1220), 1 + random.nextInt(12), 1, 0, 0).toString());
+        city.put("capital", random.nextDouble() < 0.01);
+        city.put("metersAboveSeaLevel", (long) Math.abs(random.nextGaussian() * 400));
+        if (random.nextDouble() < 0.9) {
+            city.put("carCode", 1 + random.nextInt(1000));
+        }
+        city.put("climate", pick(CLIMATES, CLIMATE_WEIGHTS));
+        city.put("standardOfLiving", pick(STANDARDS, STANDARD_WEIGHTS));
+        if (!governorIds.isEmpty() && random.nextDouble() < 0.6) {
+            city.put("governor", Map.of("id", governorIds.get(random.nextInt(governorIds.size()))));
+        }
+        return city;
+    }
+
+    String searchTerm() {
+        return NAME_PARTS[random.nextInt(NAME_PARTS.length)].toLowerCase();
+    }
+
+    private String name(long index) {
+        String prefix = NAME_PARTS[random.nextInt(10)];
+        String suffix = NAME_PARTS[10 + random.nextInt(10)];
+        return prefix + " " + Character.toUpperCase(suffix.charAt(0)) + suffix.substring(1) + " " + index;
+    }
+
+    private String pick(String[] values, double[] weights) {
+        double r = random.nextDouble();
+        double cumulative = 0;
+        for (int i = 0; i < values.length; i++) {
+            cumulative += weights[i];
+            if (r < cumulative) {
+                return values[i];
+            }
+        }
+        return values[values.length - 1];
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.citymanagement.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Задержки по именованным операциям (в микросекундах) и итоговые перцентили.
+ */
+class LatencyRecorder {
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    void record(String name, long micros, boolean success) {
+        series.computeIfAbsent(name, n -> new Series()).add(micros, success);
+    }
+
+    Map<String, Object> summary(double durationSeconds) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        series.keySet().stream().sorted().forEach(name -> result.put(name, series.get(name).summary(durationSeconds)));
+        return result;
+    }
+
+    private static class Series {
+        private final List<Long> latencies = new ArrayList<>();
+        private long errors;
+
+        synchronized void add(long micros, boolean success) {
+            latencies.add(micros);
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized Map<String, Object> summary(double durationSeconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", sorted.length);
+            summary.put("errors", errors);
+            summary.put("throughputPerSec", sorted.length / durationSeconds);
+            summary.put("p50Ms", percentile(sorted, 0.50));
+            summary.put("p99Ms", percentile(sorted, 0.99));
+            summary.put("p999Ms", percentile(sorted, 0.999));
+            summary.put("maxMs", sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1000.0);
+            return summary;
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000.0;
+        }
+    }
+}
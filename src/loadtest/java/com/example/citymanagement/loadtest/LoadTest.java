@@ -0,0 +1,248 @@
+package com.example.citymanagement.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный тест запущенного приложения.
+ *
+ * <pre>
+ * gradle loadTest -PloadTestArgs="generate --cities=1000000 --governors=500"
+ * gradle loadTest -PloadTestArgs="run --threads=32 --duration=60 --subscribers=50 --out=loadtest-results.json"
+ * </pre>
+ */
+public class LoadTest {
+
+    private static final int IMPORT_BATCH = 50_000;
+
+    // Доли операций в смешанной нагрузке
+    private static final String[] OPERATIONS = {"list", "search", "detail", "create", "update", "delete", "special"};
+    private static final double[] WEIGHTS = {0.40, 0.20, 0.15, 0.08, 0.08, 0.04, 0.05};
+
+    private static final String[] SPECIAL_PATHS = {
+            "/special/average-meters", "/special/unique-car-codes",
+            "/special/distance-to-max-area", "/special/distance-from-origin-to-max-population"};
+
+    private final Map<String, String> options;
+    private final String baseUrl;
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+        this.baseUrl = options.getOrDefault("base-url", "http://localhost:28000");
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || !(args[0].equals("generate") || args[0].equals("run"))) {
+            System.err.println("Usage: LoadTest generate|run [--base-url=...] [--option=value ...]");
+            System.exit(1);
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String[] pair = args[i].replaceFirst("^--", "").split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "true");
+        }
+
+        LoadTest loadTest = new LoadTest(options);
+        if (args[0].equals("generate")) {
+            loadTest.generate();
+        } else {
+            loadTest.run();
+        }
+    }
+
+    // Генерация набора данных через POST /api/humans и потоковый импорт /api/cities/import
+    private void generate() throws Exception {
+        long cities = Long.parseLong(options.getOrDefault("cities", "100000"));
+        int governors = Integer.parseInt(options.getOrDefault("governors", "500"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+
+        Random random = new Random(seed);
+        List<Long> governorIds = new ArrayList<>();
+        for (int i = 0; i < governors; i++) {
+            String body = objectMapper.writeValueAsString(Map.of("height", 1.5 + random.nextDouble() * 0.5));
+            HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/humans"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build());
+            governorIds.add(objectMapper.readTree(response.body()).get("id").asLong());
+        }
+
+        CityGenerator generator = new CityGenerator(seed, governorIds);
+        long started = System.nanoTime();
+        long imported = 0;
+        for (long offset = 0; offset < cities; offset += IMPORT_BATCH) {
+            ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+            long end = Math.min(cities, offset + IMPORT_BATCH);
+            for (long i = offset; i < end; i++) {
+                ndjson.writeBytes(objectMapper.writeValueAsBytes(generator.next(i)));
+                ndjson.write('\n');
+            }
+            HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/cities/import"))
+                    .header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(ndjson.toByteArray())).build());
+            imported += objectMapper.readTree(response.body()).path("imported").asLong();
+            System.out.println("Imported " + imported + " / " + cities + " cities");
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("Generated %d cities and %d governors in %.1f s (%.0f rows/s)%n",
+                imported, governors, seconds, imported / seconds);
+    }
+
+    private void run() throws Exception {
+        int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int subscribers = Integer.parseInt(options.getOrDefault("subscribers", "10"));
+        String out = options.getOrDefault("out", "loadtest-results.json");
+
+        LatencyRecorder recorder = new LatencyRecorder();
+        StompSubscribers stomp = new StompSubscribers(recorder);
+        stomp.connect(baseUrl, subscribers);
+
+        List<Long> ids = new CopyOnWriteArrayList<>(sampleIds());
+        ConcurrentLinkedQueue<Long> created = new ConcurrentLinkedQueue<>();
+        List<Long> governorIds = governorIds();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            pool.submit(() -> {
+                Random random = new Random(seed);
+                CityGenerator generator = new CityGenerator(seed, governorIds);
+                while (System.nanoTime() < deadline) {
+                    runOperation(pick(random), random, generator, ids, created, recorder);
+                }
+                return null;
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(durationSeconds + 60L, TimeUnit.SECONDS);
+
+        // Даём последним окнам рассылки дойти до подписчиков
+        Thread.sleep(1000);
+        stomp.disconnect();
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        results.put("timestamp", Instant.now().toString());
+        results.put("baseUrl", baseUrl);
+        results.put("threads", threads);
+        results.put("durationSeconds", durationSeconds);
+        results.put("subscribers", subscribers);
+        results.put("framesReceived", stomp.getFramesReceived());
+        results.put("eventsReceived", stomp.getEventsReceived());
+        results.put("operations", recorder.summary(durationSeconds));
+        ObjectMapper pretty = objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT);
+        pretty.writeValue(new File(out), results);
+        System.out.println(pretty.writeValueAsString(results));
+    }
+
+    private void runOperation(String operation, Random random, CityGenerator generator,
+                              List<Long> ids, ConcurrentLinkedQueue<Long> created, LatencyRecorder recorder) {
+        String api = baseUrl + "/api/cities";
+        long started = System.nanoTime();
+        boolean success;
+        try {
+            HttpRequest request = switch (operation) {
+                case "list" -> get(api + "?page=" + random.nextInt(50) + "&size=20&sortBy=id&sortDir=asc");
+                case "search" -> get(api + "?page=0&size=20&search="
+                        + URLEncoder.encode(generator.searchTerm(), StandardCharsets.UTF_8));
+                case "detail" -> get(api + "/" + randomId(ids, random));
+                case "create" -> json(api, "POST", generator.next(random.nextInt(1_000_000)));
+                case "update" -> json(api + "/" + randomId(ids, random), "PUT", generator.next(random.nextInt(1_000_000)));
+                case "delete" -> {
+                    // Удаляем только созданные этим тестом города, чтобы набор данных не таял
+                    Long id = created.poll();
+                    yield id != null ? HttpRequest.newBuilder(URI.create(api + "/" + id)).DELETE().build()
+                            : json(api, "POST", generator.next(random.nextInt(1_000_000)));
+                }
+                default -> get(api + SPECIAL_PATHS[random.nextInt(SPECIAL_PATHS.length)]);
+            };
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            success = response.statusCode() < 400;
+            if (success && request.method().equals("POST")) {
+                JsonNode body = objectMapper.readTree(response.body());
+                created.add(body.get("id").asLong());
+            }
+        } catch (Exception e) {
+            success = false;
+        }
+        recorder.record(operation, (System.nanoTime() - started) / 1000, success);
+    }
+
+    private List<Long> sampleIds() throws Exception {
+        HttpResponse<String> response = send(get(baseUrl + "/api/cities?cursorMode=true&size=1000&total=none"));
+        List<Long> ids = new ArrayList<>();
+        objectMapper.readTree(response.body()).path("cities").forEach(city -> ids.add(city.get("id").asLong()));
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No cities found, run 'generate' first");
+        }
+        return ids;
+    }
+
+    private List<Long> governorIds() throws Exception {
+        HttpResponse<String> response = send(get(baseUrl + "/api/humans"));
+        List<Long> ids = new ArrayList<>();
+        objectMapper.readTree(response.body()).forEach(human -> ids.add(human.get("id").asLong()));
+        return ids;
+    }
+
+    private static long randomId(List<Long> ids, Random random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    private static String pick(Random random) {
+        double r = random.nextDouble();
+        double cumulative = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            cumulative += WEIGHTS[i];
+            if (r < cumulative) {
+                return OPERATIONS[i];
+            }
+        }
+        return OPERATIONS[OPERATIONS.length - 1];
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private HttpRequest json(String url, String method, Object body) throws Exception {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws Exception {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " failed: "
+                    + response.statusCode() + " " + response.body());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.citymanagement.loadtest;
+
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * K подписчиков на /topic/city-updates через /ws, как у браузерного клиента.
+ * Задержка доставки считается от момента постановки события в очередь рассылки (timestamp события).
+ */
+class StompSubscribers {
+
+    private final WebSocketStompClient stompClient;
+    private final List<StompSession> sessions = new ArrayList<>();
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final LatencyRecorder recorder;
+
+    StompSubscribers(LatencyRecorder recorder) {
+        this.recorder = recorder;
+        this.stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        this.stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    void connect(String baseUrl, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            StompSession session = stompClient.connectAsync(baseUrl + "/ws", new StompSessionHandlerAdapter() {
+            }).get(10, TimeUnit.SECONDS);
+            session.subscribe("/topic/city-updates", new StompFrameHandler() {
+                @Override
+                public Type getPayloadType(StompHeaders headers) {
+                    return Map.class;
+                }
+
+                @Override
+                public void handleFrame(StompHeaders headers, Object payload) {
+                    onFrame((Map<?, ?>) payload);
+                }
+            });
+            sessions.add(session);
+        }
+    }
+
+    private void onFrame(Map<?, ?> batch) {
+        long now = System.currentTimeMillis();
+        framesReceived.incrementAndGet();
+        Object events = batch.get("events");
+        if (events instanceof List<?> list) {
+            for (Object event : list) {
+                eventsReceived.incrementAndGet();
+                Object timestamp = ((Map<?, ?>) event).get("timestamp");
+                if (timestamp instanceof Number sentAt) {
+                    recorder.record("broadcast_lag", (now - sentAt.longValue()) * 1000, true);
+                }
+            }
+        }
+    }
+
+    long getFramesReceived() {
+        return framesReceived.get();
+    }
+
+    long getEventsReceived() {
+        return eventsReceived.get();
+    }
+
+    void disconnect() {
+        sessions.forEach(StompSession::disconnect);
+        stompClient.stop();
+    }
+}
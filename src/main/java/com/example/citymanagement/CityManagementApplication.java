@@ -2,11 +2,19 @@ package com.example.citymanagement;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CityManagementApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(CityManagementApplication.class, args);
+        SpringApplication application = new SpringApplication(CityManagementApplication.class);
+        // Шаги старта с длительностями (создание бинов, автоконфигурации) в /actuator/startup: STARTUP_STEPS=true
+        if (Boolean.parseBoolean(System.getenv("STARTUP_STEPS"))) {
+            application.setApplicationStartup(new BufferingApplicationStartup(4096));
+        }
+        application.run(args);
     }
 }
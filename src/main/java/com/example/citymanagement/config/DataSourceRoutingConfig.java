@@ -0,0 +1,76 @@
+package com.example.citymanagement.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Источник данных с разделением чтения и записи: основной пул из spring.datasource.*,
+ * пулы реплик из city.datasource.replicas[*] (см. ReplicaRoutingDataSource).
+ * Определяется явно: при подключённом R2DBC автоконфигурация DataSource Spring Boot отключается.
+ */
+@Configuration
+@EnableConfigurationProperties({DataSourceProperties.class, ReplicaDataSourceProperties.class})
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(HikariDataSource primaryDataSource,
+                                                      DataSourceProperties primaryProperties,
+                                                      ReplicaDataSourceProperties properties) {
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        for (ReplicaDataSourceProperties.Replica replica : properties.getReplicas()) {
+            if (!StringUtils.hasText(replica.getUrl())) {
+                continue;
+            }
+            String key = "replica-" + replicas.size();
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName(key);
+            dataSource.setDriverClassName(primaryProperties.determineDriverClassName());
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setUsername(StringUtils.hasText(replica.getUsername())
+                    ? replica.getUsername() : primaryProperties.determineUsername());
+            dataSource.setPassword(StringUtils.hasText(replica.getPassword())
+                    ? replica.getPassword() : primaryProperties.determinePassword());
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+            dataSource.setConnectionTimeout(replica.getConnectionTimeoutMs());
+            // Ошибочно направленная на реплику запись падает сразу, а не на стороне PostgreSQL
+            dataSource.setReadOnly(true);
+            replicas.put(key, dataSource);
+            System.out.println("Read replica " + key + ": " + replica.getUrl());
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas,
+                new ReadYourWritesGuard(properties.getReadYourWritesMs()), properties.getMaxLagMs(),
+                properties.getLagCheckMs());
+    }
+
+    // Физическое соединение берётся при первом запросе, когда признак readOnly транзакции уже выставлен
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public MeterBinder replicaDataSourceMetrics(ReplicaRoutingDataSource routingDataSource) {
+        return routingDataSource::bindMetrics;
+    }
+}
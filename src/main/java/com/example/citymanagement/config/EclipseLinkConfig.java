@@ -1,8 +1,12 @@
 package com.example.citymanagement.config;
 
+import com.example.citymanagement.model.City;
+import org.eclipse.persistence.internal.weaving.PersistenceWeaved;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Primary;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.EclipseLinkJpaVendorAdapter;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -11,10 +15,14 @@ import javax.sql.DataSource;
 import java.util.Properties;
 
 @Configuration
+@EnableConfigurationProperties(EntityCacheProperties.class)
 public class EclipseLinkConfig {
 
+    // Схему создаёт и обновляет SchemaMigrator (sql/migrations), EclipseLink DDL не генерирует
     @Bean
-    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+    @DependsOn("schemaMigrator")
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource,
+                                                                       EntityCacheProperties cacheProperties) {
         LocalContainerEntityManagerFactoryBean em = new LocalContainerEntityManagerFactoryBean();
         em.setDataSource(dataSource);
         em.setPackagesToScan("com.example.citymanagement.model");
@@ -23,20 +31,44 @@ public class EclipseLinkConfig {
         em.setJpaVendorAdapter(vendorAdapter);
         
         Properties properties = new Properties();
-        properties.setProperty("eclipselink.weaving", "false");
+        // Классы сущностей связываются при сборке (build.gradle.kts). Без этого (запуск из IDE мимо Gradle,
+        // -PentityWeaving=false) EclipseLink загружает @OneToOne сразу и при flush сравнивает снимки всех объектов
+        boolean woven = PersistenceWeaved.class.isAssignableFrom(City.class);
+        properties.setProperty("eclipselink.weaving", woven ? "static" : "false");
+        if (woven) {
+            properties.setProperty("eclipselink.weaving.lazy", "true");
+            properties.setProperty("eclipselink.weaving.changetracking", "true");
+            properties.setProperty("eclipselink.weaving.fetchgroups", "true");
+        } else {
+            System.err.println("Entity classes are not statically woven: lazy relations, attribute change tracking "
+                    + "and fetch groups are disabled");
+        }
         properties.setProperty("eclipselink.logging.level", "INFO");
         properties.setProperty("eclipselink.logging.parameters", "true");
-        properties.setProperty("eclipselink.ddl-generation", "create-or-extend-tables");
-        properties.setProperty("eclipselink.ddl-generation.output-mode", "database");
+        // Пакетная отправка UPDATE/DELETE при flush (вставки с IDENTITY по-прежнему идут по одной)
+        properties.setProperty("eclipselink.jdbc.batch-writing", "JDBC");
+        properties.setProperty("eclipselink.jdbc.batch-writing.size", "100");
+
+        // Разделяемый кэш по сущностям; время жизни задаётся в EntityCacheService
+        cacheProperties.getEntities().forEach((entity, cache) -> {
+            properties.setProperty("eclipselink.cache.type." + entity, cache.getType());
+            properties.setProperty("eclipselink.cache.size." + entity, String.valueOf(cache.getSize()));
+            properties.setProperty("eclipselink.cache.shared." + entity, String.valueOf(cache.isShared()));
+        });
+        if (cacheProperties.isStatistics()) {
+            properties.setProperty("eclipselink.profiler", "PerformanceMonitor");
+        }
         
         em.setJpaProperties(properties);
         return em;
     }
 
+    // Основной менеджер транзакций для @Transactional; R2DBC-чтение (/api/v2) транзакций не использует.
+    // Выбирает сервер (основной или реплику) в начале транзакции
     @Bean
-    public PlatformTransactionManager transactionManager(LocalContainerEntityManagerFactoryBean entityManagerFactory) {
-        JpaTransactionManager transactionManager = new JpaTransactionManager();
-        transactionManager.setEntityManagerFactory(entityManagerFactory.getObject());
-        return transactionManager;
+    @Primary
+    public PlatformTransactionManager transactionManager(LocalContainerEntityManagerFactoryBean entityManagerFactory,
+                                                         ReplicaRoutingDataSource routingDataSource) {
+        return new ReplicaRoutingTransactionManager(entityManagerFactory.getObject(), routingDataSource);
     }
 }
@@ -0,0 +1,52 @@
+package com.example.citymanagement.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Настройки разделяемого (L2) кэша EclipseLink для сущностей из com.example.citymanagement.model.
+ * Ключ - имя сущности (City, Coordinates, Human), например city.cache.entities[City].size=10000.
+ */
+@ConfigurationProperties(prefix = "city.cache")
+public class EntityCacheProperties {
+
+    // Включает PerformanceMonitor EclipseLink для подсчёта попаданий и промахов кэша.
+    // Профилирует каждый запрос, поэтому по умолчанию выключен и включается в профиле dev
+    private boolean statistics = false;
+
+    private Map<String, EntityCache> entities = new HashMap<>();
+
+    public boolean isStatistics() { return statistics; }
+    public void setStatistics(boolean statistics) { this.statistics = statistics; }
+
+    public Map<String, EntityCache> getEntities() { return entities; }
+    public void setEntities(Map<String, EntityCache> entities) { this.entities = entities; }
+
+    public static class EntityCache {
+
+        // Тип identity map EclipseLink: Full, Weak, Soft, SoftWeak, HardWeak или NONE
+        private String type = "SoftWeak";
+
+        private int size = 1000;
+
+        // Время жизни объекта в кэше, 0 - без ограничения
+        private long expiryMs = 0;
+
+        // false - кэш изолирован в пределах EntityManager (аналог @Cacheable(false))
+        private boolean shared = true;
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+
+        public int getSize() { return size; }
+        public void setSize(int size) { this.size = size; }
+
+        public long getExpiryMs() { return expiryMs; }
+        public void setExpiryMs(long expiryMs) { this.expiryMs = expiryMs; }
+
+        public boolean isShared() { return shared; }
+        public void setShared(boolean shared) { this.shared = shared; }
+    }
+}
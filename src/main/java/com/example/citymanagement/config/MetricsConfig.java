@@ -0,0 +1,65 @@
+package com.example.citymanagement.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Метрики STOMP-брокера: активные сессии и очереди каналов clientInbound/clientOutbound.
+ * HTTP, репозитории и HikariCP инструментируются автоконфигурацией Actuator.
+ */
+@Configuration
+public class MetricsConfig {
+
+    // Множество, а не счётчик: SessionDisconnectEvent может прийти для сессии несколько раз
+    // и приходит для сессий, не завершивших CONNECT
+    private final Set<String> activeStompSessions = ConcurrentHashMap.newKeySet();
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null) {
+            activeStompSessions.add(sessionId);
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        activeStompSessions.remove(event.getSessionId());
+    }
+
+    @Bean
+    public MeterBinder stompMetrics(
+            @Qualifier("clientInboundChannelExecutor") ThreadPoolTaskExecutor inboundExecutor,
+            @Qualifier("clientOutboundChannelExecutor") ThreadPoolTaskExecutor outboundExecutor) {
+        return registry -> {
+            Gauge.builder("websocket.stomp.sessions.active", activeStompSessions, Set::size)
+                    .description("Active STOMP sessions")
+                    .register(registry);
+            registerQueueDepth(registry, "inbound", inboundExecutor);
+            registerQueueDepth(registry, "outbound", outboundExecutor);
+        };
+    }
+
+    private static void registerQueueDepth(MeterRegistry registry, String channel, ThreadPoolTaskExecutor executor) {
+        Gauge.builder("websocket.stomp.channel.queue.size", executor,
+                        e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Messages waiting in the STOMP channel executor queue")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("websocket.stomp.channel.active.threads", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("channel", channel)
+                .register(registry);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.citymanagement.config;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Чтение своих записей при чтении с реплик. После коммита записи клиент получает cookie со временем записи,
+ * и пока оно моложе city.datasource.read-your-writes-ms, его чтения идут на основной сервер.
+ * Cookie не требует HTTP-сессии и работает при нескольких экземплярах приложения.
+ */
+final class ReadYourWritesGuard {
+
+    static final String COOKIE = "city-last-write";
+
+    // Запись уже была в этом запросе: последующие чтения того же запроса тоже идут на основной сервер
+    private static final String WRITTEN_ATTRIBUTE = ReadYourWritesGuard.class.getName() + ".written";
+
+    private final long windowMs;
+
+    ReadYourWritesGuard(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    boolean requiresPrimary() {
+        if (windowMs <= 0 || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if (request.getAttribute(WRITTEN_ATTRIBUTE) != null) {
+            return true;
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return System.currentTimeMillis() - Long.parseLong(cookie.getValue()) < windowMs;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Вызывается после коммита пишущей транзакции; вне HTTP-запроса (фоновые задачи, STOMP) ничего не делает
+    void onWriteCommitted() {
+        if (windowMs <= 0 || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if (request.getAttribute(WRITTEN_ATTRIBUTE) != null) {
+            return;
+        }
+        request.setAttribute(WRITTEN_ATTRIBUTE, Boolean.TRUE);
+        HttpServletResponse response = attributes.getResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE, String.valueOf(System.currentTimeMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, (windowMs + 999) / 1000));
+            response.addCookie(cookie);
+        }
+    }
+}
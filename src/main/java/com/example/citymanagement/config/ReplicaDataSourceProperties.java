@@ -0,0 +1,68 @@
+package com.example.citymanagement.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Реплики для чтения: транзакции @Transactional(readOnly = true) идут на них, остальные - на spring.datasource.
+ * Например city.datasource.replicas[0].url=jdbc:postgresql://localhost:5433/city.
+ * Реплики с пустым url пропускаются, без реплик всё работает через основной сервер.
+ */
+@ConfigurationProperties(prefix = "city.datasource")
+public class ReplicaDataSourceProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    // Сколько после своей записи клиент читает с основного сервера (чтение своих записей), 0 - отключить
+    private long readYourWritesMs = 5000;
+
+    // Реплика с большим отставанием исключается из чтения до следующей проверки
+    private long maxLagMs = 5000;
+
+    // Интервал проверки отставания, должен быть меньше maxLagMs
+    private long lagCheckMs = 1000;
+
+    public List<Replica> getReplicas() { return replicas; }
+    public void setReplicas(List<Replica> replicas) { this.replicas = replicas; }
+
+    public long getReadYourWritesMs() { return readYourWritesMs; }
+    public void setReadYourWritesMs(long readYourWritesMs) { this.readYourWritesMs = readYourWritesMs; }
+
+    public long getMaxLagMs() { return maxLagMs; }
+    public void setMaxLagMs(long maxLagMs) { this.maxLagMs = maxLagMs; }
+
+    public long getLagCheckMs() { return lagCheckMs; }
+    public void setLagCheckMs(long lagCheckMs) { this.lagCheckMs = lagCheckMs; }
+
+    public static class Replica {
+
+        private String url;
+
+        // Пустые логин и пароль берутся из spring.datasource
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+
+        // Недоступная реплика не должна надолго задерживать запросы и проверку отставания
+        private long connectionTimeoutMs = 2000;
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+
+        public int getMaximumPoolSize() { return maximumPoolSize; }
+        public void setMaximumPoolSize(int maximumPoolSize) { this.maximumPoolSize = maximumPoolSize; }
+
+        public long getConnectionTimeoutMs() { return connectionTimeoutMs; }
+        public void setConnectionTimeoutMs(long connectionTimeoutMs) { this.connectionTimeoutMs = connectionTimeoutMs; }
+    }
+}
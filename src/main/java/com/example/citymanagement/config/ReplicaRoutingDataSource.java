@@ -0,0 +1,232 @@
+package com.example.citymanagement.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Направляет транзакции @Transactional(readOnly = true) на реплики (по кругу), остальное - на основной сервер.
+ * Сервер выбирается один раз в начале транзакции (ReplicaRoutingTransactionManager), до первого запроса, и все
+ * запросы транзакции идут на него. Снимок у них общий не всегда: в readOnly-транзакциях EclipseLink читает
+ * через отдельные соединения на каждый запрос, и каждый видит реплику на момент своего выполнения.
+ * Вне транзакций (инициализация схемы, выгрузка, фоновые пересчёты) всегда используется основной сервер.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    // Отставание меряется относительно основного сервера: реплика, потерявшая поток WAL, воспроизвела всё
+    // полученное, но позиция основного сервера уходит от неё вперёд
+    private static final String PRIMARY_LSN_QUERY = "SELECT (pg_current_wal_lsn() - '0/0'::pg_lsn)::bigint";
+
+    // Не реплика (например, второй локальный экземпляр с логической репликацией) возвращает NULL и считается неотстающей
+    private static final String REPLAY_LSN_QUERY = """
+            SELECT CASE WHEN pg_is_in_recovery() THEN (pg_last_wal_replay_lsn() - '0/0'::pg_lsn)::bigint END
+            """;
+
+    // Позиция WAL основного сервера на момент проверки
+    record WalSample(long timeMs, long lsn) {
+    }
+
+    private final Map<String, HikariDataSource> replicas;
+    private final List<String> replicaKeys;
+    private final Set<String> available = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicLong> lagMs = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final Deque<WalSample> primarySamples = new ArrayDeque<>();
+    private final DataSource primary;
+    private final ReadYourWritesGuard guard;
+    private final long maxLagMs;
+    private final long sampleWindowMs;
+
+    ReplicaRoutingDataSource(DataSource primary, Map<String, HikariDataSource> replicas,
+                             ReadYourWritesGuard guard, long maxLagMs, long lagCheckMs) {
+        // Отставание известно с точностью до интервала проверок: при lag-check-ms >= max-lag-ms
+        // реплика успевает отстать больше допустимого между двумя проверками
+        if (!replicas.isEmpty() && lagCheckMs >= maxLagMs) {
+            throw new IllegalStateException("city.datasource.lag-check-ms (" + lagCheckMs
+                    + ") must be less than city.datasource.max-lag-ms (" + maxLagMs + ")");
+        }
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        this.replicas = replicas;
+        this.replicaKeys = List.copyOf(replicas.keySet());
+        this.primary = primary;
+        this.guard = guard;
+        this.maxLagMs = maxLagMs;
+        // Дальше окна отставание точно больше допустимого, точнее его знать не нужно
+        this.sampleWindowMs = maxLagMs + 2 * lagCheckMs;
+        // До первой проверки реплики считаются доступными
+        available.addAll(replicaKeys);
+        replicaKeys.forEach(key -> lagMs.put(key, new AtomicLong(-1)));
+    }
+
+    /**
+     * Сервер транзакции; привязан к ней как ресурс и приостанавливается вместе с ней.
+     * Синхронизация регистрируется при первом обращении пишущей транзакции к базе: после коммита
+     * клиенту выставляется cookie чтения своих записей.
+     */
+    static final class Route implements TransactionSynchronization {
+
+        private final ReplicaRoutingDataSource owner;
+        private final String key;
+        private final boolean write;
+        private boolean registered;
+
+        private Route(ReplicaRoutingDataSource owner, String key, boolean write) {
+            this.owner = owner;
+            this.key = key;
+            this.write = write;
+        }
+
+        boolean replica() {
+            return !PRIMARY.equals(key);
+        }
+
+        @Override
+        public void afterCommit() {
+            owner.guard.onWriteCommitted();
+        }
+    }
+
+    // Вызывается менеджером транзакций перед началом новой транзакции
+    Route beginTransaction(boolean readOnly) {
+        String key = !readOnly || guard.requiresPrimary() ? PRIMARY : nextReplica();
+        Route route = new Route(this, key, !readOnly);
+        TransactionSynchronizationManager.bindResource(this, route);
+        return route;
+    }
+
+    // Завершение или приостановка транзакции; возвращает её сервер для возобновления
+    Route endTransaction() {
+        return (Route) TransactionSynchronizationManager.unbindResourceIfPossible(this);
+    }
+
+    void resumeTransaction(Route route) {
+        if (route != null) {
+            TransactionSynchronizationManager.bindResource(this, route);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!(TransactionSynchronizationManager.getResource(this) instanceof Route route)) {
+            return PRIMARY;
+        }
+        if (route.write && !route.registered && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(route);
+            route.registered = true;
+        }
+        return route.key;
+    }
+
+    private String nextReplica() {
+        for (int i = 0; i < replicaKeys.size(); i++) {
+            String key = replicaKeys.get(Math.floorMod(next.getAndIncrement(), replicaKeys.size()));
+            if (available.contains(key)) {
+                return key;
+            }
+        }
+        return PRIMARY;
+    }
+
+    @Scheduled(fixedDelayString = "${city.datasource.lag-check-ms:1000}")
+    public void checkReplicaLag() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            Long lsn = new JdbcTemplate(primary).queryForObject(PRIMARY_LSN_QUERY, Long.class);
+            synchronized (primarySamples) {
+                primarySamples.addLast(new WalSample(now, lsn != null ? lsn : 0));
+                while (primarySamples.size() > 1 && now - primarySamples.peekFirst().timeMs() > sampleWindowMs) {
+                    primarySamples.removeFirst();
+                }
+            }
+        } catch (DataAccessException e) {
+            // Без позиции основного сервера отставание не измерить; решение по репликам остаётся прежним
+            System.err.println("Replica lag check skipped, primary is unreachable: " + e.getMessage());
+            return;
+        }
+
+        replicas.forEach((key, dataSource) -> {
+            long lag;
+            try {
+                Long replayed = new JdbcTemplate(dataSource).queryForObject(REPLAY_LSN_QUERY, Long.class);
+                long replayedLsn = replayed != null ? replayed : Long.MAX_VALUE;
+                synchronized (primarySamples) {
+                    lag = lagBehindPrimary(primarySamples, replayedLsn, now);
+                }
+            } catch (DataAccessException e) {
+                lag = -1;
+                System.err.println("Replica " + key + " is unreachable: " + e.getMessage());
+            }
+            lagMs.get(key).set(lag);
+
+            boolean usable = lag >= 0 && lag <= maxLagMs;
+            if (usable && available.add(key)) {
+                System.out.println("Replica " + key + " is back in rotation, lag " + lag + " ms");
+            } else if (!usable && available.remove(key)) {
+                System.err.println("Replica " + key + " removed from rotation, lag " + lag + " ms (max " + maxLagMs + " ms)");
+            }
+        });
+    }
+
+    /**
+     * Отставание снизу: время с самой старой проверки, позицию WAL которой реплика ещё не воспроизвела.
+     * Записанное к этой проверке реплика ещё не видит, а всё до предыдущей уже видит. Реплика, воспроизведшая
+     * последнюю проверку, не отстаёт (0). Проверки упорядочены по времени, старейшие - в начале.
+     */
+    static long lagBehindPrimary(Deque<WalSample> samples, long replayedLsn, long now) {
+        for (WalSample sample : samples) {
+            if (sample.lsn() > replayedLsn) {
+                return Math.max(0, now - sample.timeMs());
+            }
+        }
+        return 0;
+    }
+
+    // Пул основного сервера инструментирует Actuator, пулы реплик - не бины, поэтому регистрируются здесь
+    void bindMetrics(MeterRegistry registry) {
+        replicas.forEach((key, dataSource) -> {
+            if (dataSource.getMetricRegistry() == null && dataSource.getMetricsTrackerFactory() == null) {
+                dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            }
+            Gauge.builder("city.datasource.replica.lag", lagMs.get(key), lag -> lag.get() < 0 ? Double.NaN : lag.get())
+                    .description("Replication lag of the read replica, NaN while unreachable")
+                    .baseUnit("milliseconds")
+                    .tag("replica", key)
+                    .register(registry);
+            Gauge.builder("city.datasource.replica.available", available, keys -> keys.contains(key) ? 1 : 0)
+                    .description("1 if reads are routed to the replica")
+                    .tag("replica", key)
+                    .register(registry);
+        });
+    }
+
+    public void close() {
+        replicas.values().forEach(HikariDataSource::close);
+    }
+}
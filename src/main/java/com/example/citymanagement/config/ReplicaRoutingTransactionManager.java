@@ -0,0 +1,74 @@
+package com.example.citymanagement.config;
+
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.eclipse.persistence.config.QueryHints;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA-транзакции с выбором сервера до первого запроса (см. ReplicaRoutingDataSource).
+ * Транзакция, читающая с реплики, обходит разделяемый кэш EclipseLink: не берёт из него объекты и не кладёт
+ * в него прочитанные. Иначе отстающая реплика после вытеснения или истечения записи вернула бы в кэш старую
+ * версию города, и её видели бы чтения с основного сервера - в том числе чтение своих записей и проверка
+ * версии при сохранении.
+ */
+class ReplicaRoutingTransactionManager extends JpaTransactionManager {
+
+    private final ReplicaRoutingDataSource routingDataSource;
+
+    ReplicaRoutingTransactionManager(EntityManagerFactory entityManagerFactory,
+                                     ReplicaRoutingDataSource routingDataSource) {
+        super(entityManagerFactory);
+        this.routingDataSource = routingDataSource;
+    }
+
+    // Приостановленная транзакция и её сервер
+    private record SuspendedRoute(Object resources, ReplicaRoutingDataSource.Route route) {
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        ReplicaRoutingDataSource.Route route = routingDataSource.beginTransaction(definition.isReadOnly());
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException | Error e) {
+            routingDataSource.endTransaction();
+            throw e;
+        }
+        if (route.replica()) {
+            EntityManagerHolder holder =
+                    (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+            EntityManager entityManager = holder.getEntityManager();
+            // Действует на find и все запросы этого EntityManager (DoNotCheckCache, maintain-cache=false)
+            entityManager.setProperty(QueryHints.CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS);
+            entityManager.setProperty(QueryHints.CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+        }
+    }
+
+    @Override
+    protected Object doSuspend(Object transaction) {
+        Object resources = super.doSuspend(transaction);
+        return new SuspendedRoute(resources, routingDataSource.endTransaction());
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {
+        SuspendedRoute suspended = (SuspendedRoute) suspendedResources;
+        super.doResume(transaction, suspended.resources());
+        routingDataSource.resumeTransaction(suspended.route());
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            routingDataSource.endTransaction();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.citymanagement.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Миграции схемы из sql/migrations при старте, до создания EntityManagerFactory.
+ * V1__описание.sql, V2__... применяются один раз в порядке номеров, R__описание.sql - заново при каждом изменении файла.
+ * Применённые миграции и их контрольные суммы хранятся в schema_history.
+ * Если применять нечего, старт стоит одного чтения schema_history: без DDL и без блокировок.
+ * Иначе миграции выполняет один узел под advisory lock, остальные ждут его и видят готовую схему.
+ * Миграция, завершившаяся ошибкой с SQLSTATE MDFER (например, нет расширения pg_trgm), откладывается:
+ * в schema_history она не записывается и повторяется при следующем старте. Миграции, которым нужно расширение,
+ * проверяются до блокировки: пока его нельзя создать, они пропускаются, и старт остаётся без DDL и блокировок.
+ */
+@Component
+public class SchemaMigrator {
+
+    private static final String LOCATION = "classpath:sql/migrations/*.sql";
+    private static final Pattern FILE_NAME = Pattern.compile("(?:V(\\d+)|R)__(\\w+)\\.sql");
+
+    // Ключ pg_advisory_lock, общий для всех экземпляров приложения ("city_sch")
+    private static final long LOCK_KEY = 0x636974795f736368L;
+
+    // RAISE ... USING ERRCODE = 'MDFER' в миграции: условие для неё пока не выполнено, повторить позже
+    private static final String DEFERRED_STATE = "MDFER";
+
+    // Расширения, без которых миграция заведомо отложится. Условие задаётся здесь, а не в файле миграции:
+    // изменить уже применённую миграцию нельзя
+    private static final Map<String, String> REQUIRED_EXTENSIONS = Map.of("V2", "pg_trgm");
+
+    // Расширение уже установлено или его можно создать: суперпользователь или доверенное (trusted) расширение
+    // и право CREATE на базу
+    private static final String EXTENSION_AVAILABLE = """
+            SELECT EXISTS (SELECT 1 FROM pg_extension WHERE extname = ?)
+                OR EXISTS (SELECT 1 FROM pg_available_extension_versions v
+                           WHERE v.name = ?
+                             AND ((SELECT rolsuper FROM pg_roles WHERE rolname = current_user)
+                                  OR (v.trusted AND has_database_privilege(current_database(), 'CREATE'))))
+            """;
+
+    private static final String CREATE_HISTORY = """
+            CREATE TABLE IF NOT EXISTS schema_history (
+                migration VARCHAR(200) PRIMARY KEY,
+                description VARCHAR(200) NOT NULL,
+                checksum VARCHAR(64) NOT NULL,
+                execution_ms BIGINT NOT NULL,
+                applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+            )
+            """;
+
+    private static final String RECORD_MIGRATION = """
+            INSERT INTO schema_history (migration, description, checksum, execution_ms) VALUES (?, ?, ?, ?)
+            ON CONFLICT (migration) DO UPDATE SET description = EXCLUDED.description, checksum = EXCLUDED.checksum,
+                execution_ms = EXCLUDED.execution_ms, applied_at = CURRENT_TIMESTAMP
+            """;
+
+    @Autowired
+    private DataSource dataSource;
+
+    // false - схема не проверяется и не меняется (обучающий запуск CDS при сборке, см. build.gradle.kts)
+    @Value("${city.migrations.enabled:true}")
+    private boolean enabled;
+
+    // DDL, ждущая блокировку таблицы, задерживает и все запросы за ней; лучше упасть и повторить при следующем старте
+    @Value("${city.migrations.lock-timeout-ms:10000}")
+    private long lockTimeoutMs;
+
+    record Migration(Integer version, String description, String sql, String checksum) {
+
+        boolean repeatable() {
+            return version == null;
+        }
+
+        String key() {
+            return repeatable() ? "R__" + description.replace(' ', '_') : "V" + version;
+        }
+    }
+
+    @PostConstruct
+    public void migrate() throws IOException, SQLException {
+        if (!enabled) {
+            System.out.println("Schema migrations are disabled (city.migrations.enabled=false)");
+            return;
+        }
+        long started = System.nanoTime();
+        List<Migration> migrations = load();
+        Map<String, Long> report = new LinkedHashMap<>();
+
+        try (Connection connection = dataSource.getConnection()) {
+            Set<String> unavailable = new HashSet<>();
+            if (applicable(connection, pending(migrations, readHistory(connection)), unavailable).isEmpty()) {
+                System.out.println("Schema is up to date, " + migrations.size() + " migrations checked in "
+                        + millisSince(started) + " ms" + (unavailable.isEmpty() ? "" : ", deferred " + unavailable));
+                return;
+            }
+
+            long lockStarted = System.nanoTime();
+            execute(connection, "SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+            report.put("lock wait", millisSince(lockStarted));
+            try {
+                execute(connection, CREATE_HISTORY);
+                // Пока ждали блокировку, другой узел мог применить часть миграций или все
+                for (Migration migration : applicable(connection, pending(migrations, readHistory(connection)),
+                        unavailable)) {
+                    long elapsed = apply(connection, migration);
+                    report.put(migration.key() + " " + migration.description() + (elapsed < 0 ? " (deferred)" : ""),
+                            Math.max(elapsed, 0));
+                }
+            } finally {
+                execute(connection, "SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+            }
+        }
+
+        StringBuilder summary = new StringBuilder("Schema migrated in " + millisSince(started) + " ms:");
+        report.forEach((step, ms) -> summary.append(String.format("%n  %-45s %6d ms", step, ms)));
+        System.out.println(summary);
+    }
+
+    private List<Migration> load() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        Map<String, String> files = new HashMap<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(LOCATION)) {
+            String fileName = resource.getFilename();
+            Matcher matcher = FILE_NAME.matcher(fileName != null ? fileName : "");
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Migration file name must be V<n>__name.sql or R__name.sql: " + fileName);
+            }
+            String sql = StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8)
+                    .replace("\r\n", "\n");
+            Integer version = matcher.group(1) != null ? Integer.valueOf(matcher.group(1)) : null;
+            Migration migration = new Migration(version, matcher.group(2).replace('_', ' '), sql, checksum(sql));
+            String duplicate = files.put(migration.key(), fileName);
+            if (duplicate != null) {
+                throw new IllegalStateException("Migrations " + duplicate + " and " + fileName + " have the same version");
+            }
+            migrations.add(migration);
+        }
+        // Сначала версии по номерам, повторяемые - после них, когда все таблицы уже есть
+        migrations.sort(Comparator.comparing(Migration::repeatable)
+                .thenComparing(Migration::version, Comparator.nullsLast(Comparator.<Integer>naturalOrder()))
+                .thenComparing(Migration::description));
+        return migrations;
+    }
+
+    /**
+     * Неприменённые миграции и изменившиеся повторяемые. Изменённая после применения версионная миграция -
+     * ошибка: её правка до базы уже не дойдёт. Записи о неизвестных миграциях (их применил более новый узел
+     * во время поэтапного перезапуска) пропускаются. Если среди них есть версии, повторяемые скрипты этого
+     * узла старее применённых: их повторное применение откатило бы функции нового узла.
+     */
+    private static List<Migration> pending(List<Migration> migrations, Map<String, String> applied) {
+        Set<String> known = new HashSet<>();
+        migrations.forEach(migration -> known.add(migration.key()));
+        boolean newerSchema = applied.keySet().stream()
+                .anyMatch(key -> key.startsWith("V") && !known.contains(key));
+
+        List<Migration> pending = new ArrayList<>();
+        for (Migration migration : migrations) {
+            if (migration.repeatable() && newerSchema) {
+                continue;
+            }
+            String checksum = applied.get(migration.key());
+            if (checksum == null) {
+                pending.add(migration);
+            } else if (!checksum.equals(migration.checksum())) {
+                if (!migration.repeatable()) {
+                    throw new IllegalStateException("Migration " + migration.key()
+                            + " was changed after it had been applied; add a new version instead");
+                }
+                pending.add(migration);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Неприменённые миграции без тех, чьё расширение сейчас не создать; пропущенные добавляются в deferred.
+     * Проверка - чтение каталога, без блокировок.
+     */
+    private static List<Migration> applicable(Connection connection, List<Migration> pending, Set<String> deferred)
+            throws SQLException {
+        List<Migration> applicable = new ArrayList<>();
+        for (Migration migration : pending) {
+            String extension = REQUIRED_EXTENSIONS.get(migration.key());
+            if (extension != null && !extensionAvailable(connection, extension)) {
+                if (deferred.add(migration.key())) {
+                    System.err.println("Migration " + migration.key() + " (" + migration.description()
+                            + ") deferred: extension " + extension + " is not available or cannot be created");
+                }
+                continue;
+            }
+            applicable.add(migration);
+        }
+        return applicable;
+    }
+
+    private static boolean extensionAvailable(Connection connection, String extension) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(EXTENSION_AVAILABLE)) {
+            ps.setString(1, extension);
+            ps.setString(2, extension);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private static Map<String, String> readHistory(Connection connection) throws SQLException {
+        Map<String, String> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet exists = statement.executeQuery("SELECT to_regclass('schema_history') IS NOT NULL")) {
+            exists.next();
+            if (!exists.getBoolean(1)) {
+                return applied;
+            }
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT migration, checksum FROM schema_history")) {
+            while (rs.next()) {
+                applied.put(rs.getString(1), rs.getString(2));
+            }
+        }
+        return applied;
+    }
+
+    // Миграция и запись о ней - одна транзакция: DDL в PostgreSQL транзакционна, частично применённой миграции не бывает.
+    // -1 - миграция отложена
+    private long apply(Connection connection, Migration migration) throws SQLException {
+        long started = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            execute(connection, "SET LOCAL lock_timeout = " + lockTimeoutMs);
+            // PgJDBC выполняет скрипт из нескольких команд, включая тела $$ ... $$, одним вызовом
+            execute(connection, migration.sql());
+            long elapsed = millisSince(started);
+            try (PreparedStatement ps = connection.prepareStatement(RECORD_MIGRATION)) {
+                ps.setString(1, migration.key());
+                ps.setString(2, migration.description());
+                ps.setString(3, migration.checksum());
+                ps.setLong(4, elapsed);
+                ps.executeUpdate();
+            }
+            connection.commit();
+            return elapsed;
+        } catch (SQLException e) {
+            connection.rollback();
+            if (DEFERRED_STATE.equals(e.getSQLState())) {
+                System.err.println("Migration " + migration.key() + " (" + migration.description()
+                        + ") deferred until the next start: " + e.getMessage());
+                return -1;
+            }
+            throw new SQLException("Migration " + migration.key() + " (" + migration.description() + ") failed: "
+                    + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static String checksum(String sql) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(sql.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long millisSince(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+}
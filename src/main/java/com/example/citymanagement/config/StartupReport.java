@@ -0,0 +1,135 @@
+package com.example.citymanagement.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Время старта до первого обслуженного запроса: запуск JVM до SpringApplication.run, поднятие контекста,
+ * обработчики ApplicationReadyEvent (загрузка агрегатов) и ожидание первого запроса.
+ * Отчёт печатается после первого запроса, попадает в метрику city.startup.first.request и, если задан
+ * city.startup.report-file, дописывается строкой JSON в файл - так время старта сравнивается между версиями.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class StartupReport implements Filter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${city.startup.report-file:}")
+    private String reportFile;
+
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    private volatile long startedMs = -1;
+    private volatile long readyMs = -1;
+    private volatile long readyAtUptimeMs = -1;
+    private volatile long firstRequestMs = -1;
+
+    @EventListener
+    public void onStarted(ApplicationStartedEvent event) {
+        startedMs = millis(event.getTimeTaken());
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        readyMs = millis(event.getTimeTaken());
+        readyAtUptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        System.out.println("Application ready in " + readyMs + " ms (context " + startedMs + " ms, JVM uptime "
+                + readyAtUptimeMs + " ms, AOT " + AotDetector.useGeneratedArtifacts()
+                + ", CDS " + sharedArchive() + ")");
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!reported.get() && reported.compareAndSet(false, true)) {
+                report(request);
+            }
+        }
+    }
+
+    private void report(ServletRequest request) {
+        firstRequestMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        TimeGauge.builder("city.startup.first.request", this, TimeUnit.MILLISECONDS, startup -> startup.firstRequestMs)
+                .description("Time from JVM start until the first HTTP request was served")
+                .register(meterRegistry);
+
+        // До SpringApplication.run: запуск JVM, загрузка и проверка классов main (то, что сокращает CDS)
+        long jvmMs = readyMs >= 0 ? Math.max(0, readyAtUptimeMs - readyMs) : -1;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("version", version());
+        report.put("aot", AotDetector.useGeneratedArtifacts());
+        report.put("cds", sharedArchive());
+        report.put("jvmMs", jvmMs);
+        report.put("contextMs", startedMs);
+        report.put("readyMs", readyMs);
+        report.put("firstRequestMs", firstRequestMs);
+        report.put("firstRequest", request instanceof HttpServletRequest http
+                ? http.getMethod() + " " + http.getRequestURI() : null);
+
+        System.out.println(String.format("Startup report:%n  %-28s %6d ms%n  %-28s %6d ms%n  %-28s %6d ms%n  %-28s %6d ms",
+                "JVM until SpringApplication", jvmMs, "context refresh", startedMs, "ready (incl. listeners)", readyMs,
+                "first request served", firstRequestMs));
+
+        if (StringUtils.hasText(reportFile)) {
+            try {
+                Files.writeString(Path.of(reportFile), objectMapper.writeValueAsString(report) + System.lineSeparator(),
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("Failed to write startup report to " + reportFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static String version() {
+        String version = StartupReport.class.getPackage().getImplementationVersion();
+        return version != null ? version : "dev";
+    }
+
+    private static boolean sharedArchive() {
+        return ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+                .anyMatch(argument -> argument.startsWith("-XX:SharedArchiveFile"));
+    }
+
+    private static long millis(Duration duration) {
+        return duration != null ? duration.toMillis() : -1;
+    }
+}
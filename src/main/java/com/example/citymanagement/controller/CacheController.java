@@ -0,0 +1,33 @@
+package com.example.citymanagement.controller;
+
+import com.example.citymanagement.service.EntityCacheService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cache")
+@Tag(name = "Cache Controller", description = "Статистика разделяемого кэша EclipseLink")
+public class CacheController {
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    @Operation(summary = "Получить число объектов в кэше и счётчики попаданий/промахов")
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics() {
+        try {
+            return ResponseEntity.ok(entityCacheService.getStatistics());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error loading cache statistics: " + e.getMessage()));
+        }
+    }
+}
@@ -1,26 +1,49 @@
 package com.example.citymanagement.controller;
 
+import com.example.citymanagement.dto.BulkDeleteJobStatus;
+import com.example.citymanagement.dto.CityBatchOperation;
+import com.example.citymanagement.dto.CityBatchResult;
+import com.example.citymanagement.dto.CityCursorPage;
+import com.example.citymanagement.dto.CityImportResult;
 import com.example.citymanagement.model.City;
 import com.example.citymanagement.model.Climate;
 import com.example.citymanagement.model.Human;
+import com.example.citymanagement.service.BulkDeleteJobService;
+import com.example.citymanagement.service.CityChangeBroadcaster;
+import com.example.citymanagement.service.CityExportService;
+import com.example.citymanagement.service.CityImportService;
+import com.example.citymanagement.service.CityPatchService;
+import com.example.citymanagement.service.CityRankingService;
 import com.example.citymanagement.service.CityService;
+import com.fasterxml.jackson.databind.JsonNode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -28,26 +51,59 @@ import java.util.stream.Collectors;
 @Tag(name = "City Controller", description = "REST API для управления городами")
 public class CityController {
 
+    // Большие объёмы выгружаются через /export, а не через постраничный список
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Autowired
     private CityService cityService;
 
+    @Autowired
+    private CityChangeBroadcaster cityChangeBroadcaster;
+
+    @Autowired
+    private CityImportService cityImportService;
+
+    @Autowired
+    private CityExportService cityExportService;
+
+    @Autowired
+    private BulkDeleteJobService bulkDeleteJobService;
+
+    @Autowired
+    private CityPatchService cityPatchService;
+
     @Operation(summary = "Получить список городов с пагинацией и поиском")
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getAllCities(
+    public ResponseEntity<?> getAllCities(
             @Parameter(description = "Номер страницы") @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "10") int size,
-            @Parameter(description = "Поле для сортировки") @RequestParam(defaultValue = "id") String sortBy,
+            @Parameter(description = "Поле для сортировки (при поиске также relevance)") @RequestParam(defaultValue = "id") String sortBy,
             @Parameter(description = "Направление сортировки") @RequestParam(defaultValue = "asc") String sortDir,
-            @Parameter(description = "Поисковый запрос") @RequestParam(required = false) String search) {
+            @Parameter(description = "Поисковый запрос") @RequestParam(required = false) String search,
+            @Parameter(description = "full - города целиком, summary - только столбцы таблицы списка") @RequestParam(defaultValue = "full") String view,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
         try {
-            Page<City> citiesPage;
-
-            if (search != null && !search.trim().isEmpty()) {
-                citiesPage = cityService.searchCities(search, page, size, sortBy, sortDir);
-            } else {
-                citiesPage = cityService.getCitiesPage(page, size, sortBy, sortDir);
+            int pageSize = Math.min(size, MAX_PAGE_SIZE);
+            boolean summary = view.equals("summary");
+
+            // Ревизия и страница - одной транзакцией; при совпадении с If-None-Match страница не читается
+            CityService.RevisionedPage revisioned = cityService.getRevisionedPage(
+                    revision -> !ConditionalRequests.noneMatch(ifNoneMatch, ConditionalRequests.weakEtag(revision)),
+                    () -> {
+                        if (summary) {
+                            return cityService.getCityListPage(search, page, pageSize, sortBy, sortDir);
+                        } else if (search != null && !search.trim().isEmpty()) {
+                            return cityService.searchCities(search, page, pageSize, sortBy, sortDir);
+                        }
+                        return cityService.getCitiesPage(page, pageSize, sortBy, sortDir);
+                    });
+            String etag = ConditionalRequests.weakEtag(revisioned.revision());
+            if (revisioned.page() == null) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache())
+                        .varyBy(HttpHeaders.ACCEPT).build();
             }
+            Page<City> citiesPage = revisioned.page();
 
             Map<String, Object> response = new HashMap<>();
             response.put("cities", citiesPage.getContent());
@@ -56,25 +112,223 @@ public class CityController {
             response.put("totalElements", citiesPage.getTotalElements());
             response.put("sortBy", sortBy);
             response.put("sortDir", sortDir);
+            response.put("size", pageSize);
+
+            // Вид summary сериализует только поля City.ListView: остальные атрибуты не загружены
+            Object body = response;
+            if (summary) {
+                MappingJacksonValue listView = new MappingJacksonValue(response);
+                listView.setSerializationView(City.ListView.class);
+                body = listView;
+            }
+
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).varyBy(HttpHeaders.ACCEPT)
+                    .body(body);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error loading cities: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Получить список городов с keyset-пагинацией (курсором)")
+    @GetMapping(params = "cursorMode=true")
+    public ResponseEntity<Map<String, Object>> getCitiesByCursor(
+            @Parameter(description = "Курсор из поля nextCursor предыдущей страницы") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "10") int size,
+            @Parameter(description = "Поле для сортировки (id, name, area, population, creationDate)") @RequestParam(defaultValue = "id") String sortBy,
+            @Parameter(description = "Направление сортировки") @RequestParam(defaultValue = "asc") String sortDir,
+            @Parameter(description = "Подсчёт общего числа записей: none, estimate или exact") @RequestParam(defaultValue = "estimate") String total) {
+
+        try {
+            if (size <= 0) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Page size must be greater than 0"));
+            }
+            size = Math.min(size, MAX_PAGE_SIZE);
+
+            CityCursorPage citiesPage = cityService.getCitiesAfter(cursor, size, sortBy, sortDir);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("cities", citiesPage.cities());
+            response.put("nextCursor", citiesPage.nextCursor());
+            response.put("hasNext", citiesPage.hasNext());
             response.put("size", size);
+            switch (total) {
+                case "exact" -> response.put("totalElements", cityService.countCities());
+                case "estimate" -> {
+                    response.put("totalElements", cityService.estimateCitiesCount());
+                    response.put("totalEstimated", true);
+                }
+                default -> { }
+            }
 
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error loading cities: " + e.getMessage()));
         }
     }
 
+    @Operation(summary = "Выгрузить все города потоком в NDJSON или CSV")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCities(
+            @Parameter(description = "Формат выгрузки: ndjson или csv") @RequestParam(defaultValue = "ndjson") String format) {
+
+        if (format.equalsIgnoreCase("csv")) {
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=cities.csv")
+                    .body(cityExportService::exportCsv);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=cities.ndjson")
+                .body(cityExportService::exportNdjson);
+    }
+
+    @Operation(summary = "Найти k ближайших к точке городов")
+    @GetMapping("/nearest")
+    public ResponseEntity<Map<String, Object>> getNearestCities(
+            @Parameter(description = "Координата X точки") @RequestParam double x,
+            @Parameter(description = "Координата Y точки") @RequestParam double y,
+            @Parameter(description = "Число городов") @RequestParam(defaultValue = "10") int k) {
+
+        try {
+            if (k <= 0 || k > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().body(Map.of("error", "k must be between 1 and " + MAX_PAGE_SIZE));
+            }
+            return ResponseEntity.ok(Map.of("cities", cityService.getNearestCities(x, y, k)));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error searching nearest cities: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Найти города внутри прямоугольника координат")
+    @GetMapping("/within")
+    public ResponseEntity<Map<String, Object>> getCitiesWithin(
+            @Parameter(description = "Минимальная координата X") @RequestParam double minX,
+            @Parameter(description = "Минимальная координата Y") @RequestParam double minY,
+            @Parameter(description = "Максимальная координата X") @RequestParam double maxX,
+            @Parameter(description = "Максимальная координата Y") @RequestParam double maxY,
+            @Parameter(description = "Максимальное число городов") @RequestParam(defaultValue = "100") int limit) {
+
+        try {
+            if (minX > maxX || minY > maxY) {
+                return ResponseEntity.badRequest().body(Map.of("error", "min coordinates must not exceed max coordinates"));
+            }
+            List<City> cities = cityService.getCitiesWithin(minX, minY, maxX, maxY, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+            return ResponseEntity.ok(Map.of("cities", cities));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error searching cities in area: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Получить несколько городов по списку ID одним запросом")
+    @GetMapping("/batch")
+    public ResponseEntity<Map<String, Object>> getCitiesBatch(
+            @Parameter(description = "ID городов через запятую") @RequestParam List<Long> ids) {
+
+        try {
+            if (ids.size() > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().body(Map.of("error", "At most " + MAX_PAGE_SIZE + " ids per request"));
+            }
+            List<City> cities = cityService.getCitiesByIds(ids);
+            Set<Long> found = cities.stream().map(City::getId).collect(Collectors.toSet());
+            List<Long> missing = ids.stream().filter(id -> !found.contains(id)).distinct().toList();
+            return ResponseEntity.ok(Map.of("cities", cities, "missing", missing));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error loading cities: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Выполнить пакет операций создания, изменения и удаления городов в одной транзакции",
+            description = "Результат каждой операции - в results[i].status; ошибка отдельной операции не отменяет остальные")
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> applyBatch(
+            @Parameter(description = "Операции пакета") @RequestBody List<CityBatchOperation> operations) {
+
+        try {
+            if (operations.size() > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().body(Map.of("error", "At most " + MAX_PAGE_SIZE + " operations per batch"));
+            }
+            List<CityBatchResult> results = cityService.applyBatch(operations);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", results.stream().allMatch(CityBatchResult::isSuccess));
+            response.put("results", results);
+            return ResponseEntity.ok(response);
+        } catch (OptimisticLockingFailureException e) {
+            // Город изменили параллельно между загрузкой и flush - пакет откачен целиком
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Batch rolled back: " + e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Batch rolled back: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Получить крупнейшие города по площади или населению")
+    @GetMapping("/top")
+    public ResponseEntity<Map<String, Object>> getTopCities(
+            @Parameter(description = "Показатель рейтинга: area или population") @RequestParam(defaultValue = "area") String by,
+            @Parameter(description = "Число городов") @RequestParam(defaultValue = "10") int n) {
+
+        try {
+            if (n <= 0 || n > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().body(Map.of("error", "n must be between 1 and " + MAX_PAGE_SIZE));
+            }
+            return ResponseEntity.ok(Map.of("by", by, "cities", cityService.getTopCities(by, n)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error loading top cities: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Получить место города в рейтинге по площади или населению")
+    @GetMapping("/{id}/rank")
+    public ResponseEntity<?> getCityRank(
+            @Parameter(description = "ID города") @PathVariable Long id,
+            @Parameter(description = "Показатель рейтинга: area или population") @RequestParam(defaultValue = "area") String by) {
+
+        try {
+            CityRankingService.Rank rank = cityService.getCityRank(by, id);
+            if (rank == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "City not found with id: " + id));
+            }
+            return ResponseEntity.ok(rank);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error loading city rank: " + e.getMessage()));
+        }
+    }
+
     @Operation(summary = "Получить город по ID")
     @GetMapping("/{id}")
     public ResponseEntity<?> getCityById(
-            @Parameter(description = "ID города") @PathVariable Long id) {
+            @Parameter(description = "ID города") @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
 
         try {
             Optional<City> city = cityService.getCityById(id);
 
             if (city.isPresent()) {
-                return ResponseEntity.ok(city.get());
+                MediaType representation = ConditionalRequests.representation(accept);
+                String etag = ConditionalRequests.versionEtag(city.get().getVersion(), representation);
+                if (!ConditionalRequests.noneMatch(ifNoneMatch, etag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache())
+                            .varyBy(HttpHeaders.ACCEPT).build();
+                }
+                return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                        .varyBy(HttpHeaders.ACCEPT).contentType(representation).body(city.get());
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(Map.of("error", "City not found with id: " + id));
@@ -89,7 +343,8 @@ public class CityController {
     @PostMapping
     public ResponseEntity<?> createCity(
             @Parameter(description = "Данные города") @Valid @RequestBody City city,
-            BindingResult result) {
+            BindingResult result,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
 
         try {
             if (result.hasErrors()) {
@@ -104,19 +359,59 @@ public class CityController {
             }
 
             City savedCity = cityService.saveCity(city);
-            return ResponseEntity.status(HttpStatus.CREATED).body(savedCity);
+            MediaType representation = ConditionalRequests.representation(accept);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .eTag(ConditionalRequests.versionEtag(savedCity.getVersion(), representation))
+                    .contentType(representation)
+                    .body(savedCity);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error creating city: " + e.getMessage()));
         }
     }
 
+    @Operation(summary = "Потоковый импорт городов из NDJSON или CSV (первая строка CSV - заголовок)")
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<Map<String, Object>> importCities(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            InputStream body) {
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            CityImportResult result = contentType.startsWith("text/csv") ?
+                    cityImportService.importCsv(body) : cityImportService.importNdjson(body);
+            response.put("success", result.failed() == 0);
+            response.put("imported", result.imported());
+            response.put("failed", result.failed());
+            response.put("errors", result.errors());
+            response.put("message", "Imported " + result.imported() + " cities, " + result.failed() + " rows failed");
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Error importing cities: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
     @Operation(summary = "Обновить город")
     @PutMapping("/{id}")
     public ResponseEntity<?> updateCity(
             @Parameter(description = "ID города") @PathVariable Long id,
             @Parameter(description = "Данные города") @Valid @RequestBody City city,
-            BindingResult result) {
+            BindingResult result,
+            @Parameter(description = "ETag города, полученный при чтении") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+        Long expectedVersion;
+        try {
+            expectedVersion = ConditionalRequests.expectedVersion(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(Map.of("error", e.getMessage()));
+        }
 
         try {
             if (result.hasErrors()) {
@@ -131,8 +426,56 @@ public class CityController {
             }
 
             city.setId(id);
-            City updatedCity = cityService.saveCity(city);
-            return ResponseEntity.ok(updatedCity);
+            City updatedCity = cityService.saveCity(city, expectedVersion);
+            MediaType representation = ConditionalRequests.representation(accept);
+            return ResponseEntity.ok()
+                    .eTag(ConditionalRequests.versionEtag(updatedCity.getVersion(), representation))
+                    .contentType(representation)
+                    .body(updatedCity);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Error updating city: " + e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Частично обновить город (JSON Merge Patch)",
+            description = "Меняются только переданные поля, null очищает необязательное поле, governor задаётся как {\"id\": N} или null")
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> patchCity(
+            @Parameter(description = "ID города") @PathVariable Long id,
+            @Parameter(description = "Изменённые поля города") @RequestBody JsonNode patch,
+            @Parameter(description = "ETag города, полученный при чтении") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+        Long expectedVersion;
+        try {
+            expectedVersion = ConditionalRequests.expectedVersion(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(Map.of("error", e.getMessage()));
+        }
+
+        try {
+            City city = cityPatchService.patchCity(id, patch, expectedVersion);
+            MediaType representation = ConditionalRequests.representation(accept);
+            return ResponseEntity.ok()
+                    .eTag(ConditionalRequests.versionEtag(city.getVersion(), representation))
+                    .contentType(representation)
+                    .body(city);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (DataIntegrityViolationException e) {
+            // Внешний ключ governor_id или CHECK-ограничение таблицы
+            return ResponseEntity.badRequest().body(Map.of("error", "Patch violates a database constraint (unknown governor?): "
+                    + e.getMostSpecificCause().getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error updating city: " + e.getMessage()));
@@ -142,7 +485,15 @@ public class CityController {
     @Operation(summary = "Удалить город")
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteCity(
-            @Parameter(description = "ID города") @PathVariable Long id) {
+            @Parameter(description = "ID города") @PathVariable Long id,
+            @Parameter(description = "ETag города, полученный при чтении") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        Long expectedVersion;
+        try {
+            expectedVersion = ConditionalRequests.expectedVersion(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(Map.of("error", e.getMessage()));
+        }
 
         try {
             if (!cityService.getCityById(id).isPresent()) {
@@ -150,8 +501,11 @@ public class CityController {
                         .body(Map.of("error", "City not found with id: " + id));
             }
 
-            cityService.deleteCity(id);
+            cityService.deleteCity(id, expectedVersion);
             return ResponseEntity.ok().body(Map.of("message", "City deleted successfully"));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body(Map.of("error", e.getMessage()));
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Map.of("error", e.getMessage()));
@@ -163,18 +517,19 @@ public class CityController {
 
     // Special operations API endpoints
 
-    @Operation(summary = "Удалить города по типу климата")
+    @Operation(summary = "Запустить фоновое удаление городов по типу климата", description = "Прогресс - GET /api/jobs/{jobId} и /topic/jobs/{jobId}")
     @PostMapping("/special/delete-by-climate")
     public ResponseEntity<Map<String, Object>> deleteCitiesByClimate(
             @Parameter(description = "Тип климата") @RequestParam Climate climate) {
 
         Map<String, Object> response = new HashMap<>();
         try {
-            long deletedCount = cityService.deleteCitiesByClimate(climate);
+            BulkDeleteJobStatus job = bulkDeleteJobService.submit(climate);
             response.put("success", true);
-            response.put("deletedCount", deletedCount);
-            response.put("message", "Deleted " + deletedCount + " cities with climate " + climate);
-            return ResponseEntity.ok(response);
+            response.put("jobId", job.jobId());
+            response.put("job", job);
+            response.put("message", "Started deleting cities with climate " + climate + " (job " + job.jobId() + ")");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
         } catch (Exception e) {
             response.put("success", false);
             response.put("message", "Error deleting cities: " + e.getMessage());
@@ -254,6 +609,15 @@ public class CityController {
         }
     }
 
+    @Operation(summary = "Получить статистику рассылки изменений по WebSocket")
+    @GetMapping("/broadcast-stats")
+    public ResponseEntity<Map<String, Object>> getBroadcastStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("eventsReceived", cityChangeBroadcaster.getEventsReceived());
+        response.put("framesSent", cityChangeBroadcaster.getFramesSent());
+        return ResponseEntity.ok(response);
+    }
+
     @Operation(summary = "Получить все доступные типы климата")
     @GetMapping("/climates")
     public ResponseEntity<Climate[]> getClimates() {
@@ -0,0 +1,40 @@
+package com.example.citymanagement.controller;
+
+import com.example.citymanagement.dto.CityDto;
+import com.example.citymanagement.service.CityReactiveService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/api/v2/cities")
+@Tag(name = "City Reactive Controller", description = "Неблокирующее потоковое чтение городов (R2DBC)")
+public class CityReactiveController {
+
+    @Autowired
+    private CityReactiveService cityReactiveService;
+
+    @Operation(summary = "Потоковая выдача городов в порядке id (NDJSON или SSE)")
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<CityDto> streamCities(
+            @Parameter(description = "Выдавать города с id больше указанного") @RequestParam(defaultValue = "0") long afterId,
+            @Parameter(description = "Максимальное число городов (по умолчанию - все)") @RequestParam(required = false) Long limit) {
+        return cityReactiveService.streamCities(afterId, limit);
+    }
+
+    @Operation(summary = "Получить город по ID")
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<CityDto>> getCityById(
+            @Parameter(description = "ID города") @PathVariable long id) {
+        return cityReactiveService.getCity(id)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+}
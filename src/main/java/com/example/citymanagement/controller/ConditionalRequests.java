@@ -0,0 +1,117 @@
+package com.example.citymanagement.controller;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Разбор заголовков If-None-Match и If-Match для условных запросов к городам.
+ */
+final class ConditionalRequests {
+
+    static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    // Представления города в порядке конвертеров: при равном q в Accept выбирается первое
+    private static final List<MediaType> CITY_REPRESENTATIONS = List.of(
+            MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, SMILE);
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Представление города по Accept: с наибольшим q среди JSON, CBOR и Smile, без подходящего - JSON.
+     * Контроллер выставляет его как Content-Type ответа, поэтому ETag и тело всегда одного представления.
+     */
+    static MediaType representation(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType best = MediaType.APPLICATION_JSON;
+        double bestQuality = 0;
+        for (MediaType candidate : CITY_REPRESENTATIONS) {
+            double quality = 0;
+            for (MediaType mediaType : accepted) {
+                if (mediaType.includes(candidate)) {
+                    quality = Math.max(quality, mediaType.getQualityValue());
+                }
+            }
+            if (quality > bestQuality) {
+                best = candidate;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Сильный ETag версии города. JSON, CBOR и Smile одной версии побайтно различаются, поэтому тег двоичных
+     * представлений получает суффикс формата: "3", "3-cbor", "3-smile". If-Match читает только номер версии.
+     */
+    static String versionEtag(Long version, MediaType representation) {
+        if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(representation)) {
+            return etag(version + "-cbor");
+        }
+        if (SMILE.equalsTypeAndSubtype(representation)) {
+            return etag(version + "-smile");
+        }
+        return etag(String.valueOf(version));
+    }
+
+    static String etag(String value) {
+        return "\"" + value + "\"";
+    }
+
+    // Слабый ETag: одна ревизия списка отдаётся в JSON, CBOR и Smile, сжатой или нет.
+    // Сильный ETag Tomcat не сжимает, а списки как раз самые большие ответы
+    static String weakEtag(String value) {
+        return "W/" + etag(value);
+    }
+
+    // If-None-Match сравнивается слабо: W/"1" совпадает с "1"
+    static boolean noneMatch(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return true;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = stripWeak(candidate.trim());
+            if (tag.equals("*") || tag.equals(opaque)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * Версия города из If-Match: номер до суффикса формата ("3-cbor" - версия 3). null - заголовка нет или
+     * он равен *, то есть версия не проверяется. Слабые и нечисловые ETag не могут совпасть с версией,
+     * поэтому дают IllegalArgumentException.
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.contains(",") || !tag.startsWith("\"") || !tag.endsWith("\"") || tag.length() < 3) {
+            throw new IllegalArgumentException("If-Match must be a single strong ETag of the city: " + ifMatch);
+        }
+        try {
+            String value = tag.substring(1, tag.length() - 1);
+            int suffix = value.indexOf('-');
+            return Long.valueOf(suffix > 0 ? value.substring(0, suffix) : value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match does not match any city version: " + ifMatch);
+        }
+    }
+}
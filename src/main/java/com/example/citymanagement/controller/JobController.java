@@ -0,0 +1,59 @@
+package com.example.citymanagement.controller;
+
+import com.example.citymanagement.dto.BulkDeleteJobStatus;
+import com.example.citymanagement.service.BulkDeleteJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/jobs")
+@Tag(name = "Job Controller", description = "Фоновые задания массового удаления городов")
+public class JobController {
+
+    @Autowired
+    private BulkDeleteJobService bulkDeleteJobService;
+
+    @Operation(summary = "Получить список недавних заданий")
+    @GetMapping
+    public ResponseEntity<List<BulkDeleteJobStatus>> getJobs() {
+        return ResponseEntity.ok(bulkDeleteJobService.getJobs());
+    }
+
+    @Operation(summary = "Получить состояние задания")
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getJob(
+            @Parameter(description = "ID задания") @PathVariable String id) {
+
+        BulkDeleteJobStatus status = bulkDeleteJobService.getStatus(id);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Job not found with id: " + id));
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    @Operation(summary = "Отменить задание", description = "Уже удалённые порции не восстанавливаются")
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<?> cancelJob(
+            @Parameter(description = "ID задания") @PathVariable String id) {
+
+        BulkDeleteJobStatus status = bulkDeleteJobService.cancel(id);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Job not found with id: " + id));
+        }
+        return ResponseEntity.ok(status);
+    }
+}
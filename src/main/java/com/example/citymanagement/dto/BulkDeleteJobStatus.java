@@ -0,0 +1,31 @@
+package com.example.citymanagement.dto;
+
+import com.example.citymanagement.model.Climate;
+
+/**
+ * Состояние фонового удаления городов по климату; рассылается в /topic/jobs/{jobId} после каждой порции.
+ * total - число городов с этим климатом на момент запуска, deleted - уже удалённые города,
+ * coordinatesDeleted - удалённые вместе с ними координаты.
+ */
+public record BulkDeleteJobStatus(String type, String jobId, Climate climate, State state, long total, long deleted,
+                                  long coordinatesDeleted, String error, long submittedAt, Long finishedAt) {
+
+    public static final String TYPE = "bulk_delete_job";
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        FAILED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == CANCELLED || this == FAILED;
+        }
+    }
+
+    public BulkDeleteJobStatus(String jobId, Climate climate, State state, long total, long deleted,
+                               long coordinatesDeleted, String error, long submittedAt, Long finishedAt) {
+        this(TYPE, jobId, climate, state, total, deleted, coordinatesDeleted, error, submittedAt, finishedAt);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.citymanagement.dto;
+
+import com.example.citymanagement.model.City;
+
+/**
+ * Одна операция POST /api/cities/batch. id нужен для UPDATE и DELETE, city - для CREATE и UPDATE.
+ * version - ожидаемая версия города (как If-Match); без неё для UPDATE берётся city.version, если задана.
+ */
+public record CityBatchOperation(Action action, Long id, Long version, City city) {
+
+    public enum Action {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.citymanagement.dto;
+
+import com.example.citymanagement.model.City;
+
+/**
+ * Итог одной операции пакета; status совпадает с кодом, который вернул бы одиночный запрос
+ * (201, 200, 204, 400, 404, 412). index - позиция операции в запросе.
+ */
+public record CityBatchResult(int index, CityBatchOperation.Action action, Long id, int status, String error, City city) {
+
+    public static CityBatchResult failed(int index, CityBatchOperation operation, int status, String error) {
+        return new CityBatchResult(index, operation.action(), operation.id(), status, error, null);
+    }
+
+    public boolean isSuccess() {
+        return status < 300;
+    }
+}
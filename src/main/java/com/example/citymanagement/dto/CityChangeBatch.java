@@ -0,0 +1,17 @@
+package com.example.citymanagement.dto;
+
+import java.util.List;
+
+/**
+ * Все изменения городов, накопленные за одно окно рассылки, в одном сообщении /topic/city-updates.
+ * Ревизии идут подряд от fromRevision до toRevision; events может содержать меньше элементов,
+ * если несколько изменений одного города были схлопнуты в одно.
+ */
+public record CityChangeBatch(String type, long fromRevision, long toRevision, List<CityChangeEvent> events, long timestamp) {
+
+    public static final String TYPE = "city_changes";
+
+    public CityChangeBatch(long fromRevision, long toRevision, List<CityChangeEvent> events) {
+        this(TYPE, fromRevision, toRevision, events, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.citymanagement.dto;
+
+import com.example.citymanagement.model.City;
+
+import java.util.List;
+
+/**
+ * Событие изменения городов, рассылаемое в /topic/city-updates.
+ * revision монотонно растёт, поэтому клиент может заметить пропущенные события и перезагрузить данные.
+ * city заполняется только для CREATED и UPDATED.
+ */
+public record CityChangeEvent(String type, Operation operation, List<Long> ids, long revision, City city, long timestamp) {
+
+    public static final String TYPE = "city_changed";
+
+    public enum Operation {
+        CREATED,
+        UPDATED,
+        DELETED,
+        BULK_DELETED,
+        BULK_CREATED
+    }
+
+    public CityChangeEvent(Operation operation, List<Long> ids, long revision, City city) {
+        this(TYPE, operation, ids, revision, city, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.citymanagement.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор keyset-пагинации: последняя пара (значение ключа сортировки, id) на странице.
+ * Клиент получает его в поле nextCursor и передаёт обратно без изменений.
+ */
+public record CityCursor(String sortBy, String sortDir, long lastId, String lastValue) {
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String raw = sortBy + SEPARATOR + sortDir + SEPARATOR + lastId + SEPARATOR + lastValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static CityCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // Значение идёт последним, поэтому может содержать разделитель (например, в названии города)
+            String[] parts = raw.split("\\" + SEPARATOR, 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new CityCursor(parts[0], parts[1], Long.parseLong(parts[2]), parts[3]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.citymanagement.dto;
+
+import com.example.citymanagement.model.City;
+
+import java.util.List;
+
+/**
+ * Страница городов в режиме keyset-пагинации. nextCursor равен null на последней странице.
+ */
+public record CityCursorPage(List<City> cities, String nextCursor) {
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
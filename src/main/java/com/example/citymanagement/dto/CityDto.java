@@ -0,0 +1,18 @@
+package com.example.citymanagement.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Город для потокового чтения через /api/v2/cities. JSON совпадает по форме с сущностью City.
+ */
+public record CityDto(Long id, String name, CoordinatesDto coordinates, LocalDateTime creationDate,
+                      Integer area, Integer population, LocalDateTime establishmentDate, Boolean capital,
+                      Long metersAboveSeaLevel, Long carCode, String climate, String standardOfLiving,
+                      GovernorDto governor) {
+
+    public record CoordinatesDto(Long id, float x, long y) {
+    }
+
+    public record GovernorDto(Long id, float height) {
+    }
+}
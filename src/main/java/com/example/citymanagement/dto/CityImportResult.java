@@ -0,0 +1,12 @@
+package com.example.citymanagement.dto;
+
+import java.util.List;
+
+/**
+ * Итог потокового импорта городов. errors содержит не более CityImportService.MAX_REPORTED_ERRORS записей.
+ */
+public record CityImportResult(long imported, long failed, List<RowError> errors) {
+
+    public record RowError(long line, String message) {
+    }
+}
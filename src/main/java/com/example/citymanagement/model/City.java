@@ -1,5 +1,6 @@
 package com.example.citymanagement.model;
 
+import com.fasterxml.jackson.annotation.JsonView;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
@@ -10,18 +11,26 @@ import java.time.LocalDateTime;
 @Schema(description = "Модель города")
 public class City {
 
+    // Столбцы таблицы на странице списка: GET /api/cities?view=summary загружает и отдаёт только их
+    public interface ListView {
+    }
+
+    @JsonView(ListView.class)
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Positive(message = "ID must be greater than 0")
     @Schema(description = "Уникальный идентификатор города", example = "1")
     private Long id;
 
+    @JsonView(ListView.class)
     @Column(name = "name", nullable = false)
     @NotBlank(message = "Name cannot be null or empty")
     @Schema(description = "Название города", example = "Москва", requiredMode = Schema.RequiredMode.REQUIRED)
     private String name;
 
-    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    // Ленивые связи работают только в связанных при сборке классах (см. EclipseLinkConfig); списки загружают их JOIN FETCH
+    @JsonView(ListView.class)
+    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JoinColumn(name = "coordinates_id", nullable = false)
     @NotNull(message = "Coordinates cannot be null")
     @Schema(description = "Координаты города", requiredMode = Schema.RequiredMode.REQUIRED)
@@ -32,12 +41,14 @@ public class City {
     @Schema(description = "Дата создания записи", example = "2023-10-15T14:30:00")
     private LocalDateTime creationDate;
 
+    @JsonView(ListView.class)
     @Column(name = "area", nullable = false)
     @NotNull(message = "Area cannot be null")
     @Positive(message = "Area must be greater than 0")
     @Schema(description = "Площадь города в квадратных километрах", example = "2561", requiredMode = Schema.RequiredMode.REQUIRED)
     private Integer area;
 
+    @JsonView(ListView.class)
     @Column(name = "population", nullable = false)
     @NotNull(message = "Population cannot be null")
     @Positive(message = "Population must be greater than 0")
@@ -48,6 +59,7 @@ public class City {
     @Schema(description = "Дата основания города", example = "1147-01-01T00:00:00")
     private LocalDateTime establishmentDate;
 
+    @JsonView(ListView.class)
     @Column(name = "capital")
     @Schema(description = "Является ли город столицей", example = "true")
     private Boolean capital;
@@ -63,6 +75,7 @@ public class City {
     @Schema(description = "Код автомобильного номера", example = "77")
     private Long carCode;
 
+    @JsonView(ListView.class)
     @Enumerated(EnumType.STRING)
     @Column(name = "climate")
     @Schema(description = "Климат города", example = "RAIN_FOREST")
@@ -73,11 +86,17 @@ public class City {
     @Schema(description = "Уровень жизни в городе", example = "HIGH")
     private StandardOfLiving standardOfLiving;
 
-    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JoinColumn(name = "governor_id")
     @Schema(description = "Губернатор города")
     private Human governor;
 
+    @JsonView(ListView.class)
+    @Version
+    @Column(name = "version", nullable = false)
+    @Schema(description = "Версия записи для оптимистичной блокировки (ETag города)", example = "3")
+    private Long version;
+
 
     public City() {
         this.creationDate = LocalDateTime.now();
@@ -123,6 +142,9 @@ public class City {
     public Human getGovernor() { return governor; }
     public void setGovernor(Human governor) { this.governor = governor; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     @Override
     public String toString() {
         return "City{" +
@@ -139,6 +161,7 @@ public class City {
                 ", climate=" + climate +
                 ", standardOfLiving=" + standardOfLiving +
                 ", governor=" + governor +
+                ", version=" + version +
                 '}';
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.citymanagement.model;
 
+import com.fasterxml.jackson.annotation.JsonView;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
@@ -9,15 +10,18 @@ import jakarta.validation.constraints.DecimalMin;
 @Schema(description = "Модель координат")
 public class Coordinates {
 
+    @JsonView(City.ListView.class)
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Schema(description = "Уникальный идентификатор координат", example = "1")
     private Long id;
 
+    @JsonView(City.ListView.class)
     @Column(name = "x", nullable = false)
     @Schema(description = "Координата X", example = "55.7558", requiredMode = Schema.RequiredMode.REQUIRED)
     private float x;
 
+    @JsonView(City.ListView.class)
     @Column(name = "y", nullable = false)
     @DecimalMin(value = "-958.99", message = "Y coordinate must be greater than -959")
     @Schema(description = "Координата Y", example = "37.6173", requiredMode = Schema.RequiredMode.REQUIRED)
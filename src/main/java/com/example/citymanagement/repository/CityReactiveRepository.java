@@ -0,0 +1,66 @@
+package com.example.citymanagement.repository;
+
+import com.example.citymanagement.dto.CityDto;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Неблокирующее чтение городов через R2DBC по тем же таблицам, что и JPA.
+ * Запись по-прежнему идёт только через EclipseLink.
+ */
+@Repository
+public class CityReactiveRepository {
+
+    private static final String SELECT_CITIES = """
+            SELECT c.id, c.name, c.creation_date, c.area, c.population, c.establishment_date, c.capital,
+                   c.meters_above_sea_level, c.car_code, c.climate, c.standard_of_living,
+                   co.id AS coordinates_id, co.x, co.y, h.id AS governor_id, h.height
+            FROM cities c
+            JOIN coordinates co ON c.coordinates_id = co.id
+            LEFT JOIN humans h ON c.governor_id = h.id
+            """;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    // Строки приходят по мере запроса подписчика, поэтому медленный клиент притормаживает чтение из базы
+    public Flux<CityDto> findAfter(long afterId, long limit) {
+        return databaseClient.sql(SELECT_CITIES + " WHERE c.id > :afterId ORDER BY c.id LIMIT :limit")
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(CityReactiveRepository::toDto)
+                .all();
+    }
+
+    public Mono<CityDto> findById(long id) {
+        return databaseClient.sql(SELECT_CITIES + " WHERE c.id = :id")
+                .bind("id", id)
+                .map(CityReactiveRepository::toDto)
+                .one();
+    }
+
+    private static CityDto toDto(Readable row) {
+        Long governorId = row.get("governor_id", Long.class);
+        return new CityDto(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                new CityDto.CoordinatesDto(row.get("coordinates_id", Long.class),
+                        row.get("x", Float.class), row.get("y", Long.class)),
+                row.get("creation_date", LocalDateTime.class),
+                row.get("area", Integer.class),
+                row.get("population", Integer.class),
+                row.get("establishment_date", LocalDateTime.class),
+                row.get("capital", Boolean.class),
+                row.get("meters_above_sea_level", Long.class),
+                row.get("car_code", Long.class),
+                row.get("climate", String.class),
+                row.get("standard_of_living", String.class),
+                governorId != null ? new CityDto.GovernorDto(governorId, row.get("height", Float.class)) : null);
+    }
+}
@@ -1,20 +1,59 @@
 package com.example.citymanagement.repository;
 
 import com.example.citymanagement.model.City;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface CityRepository extends JpaRepository<City, Long> {
+public interface CityRepository extends JpaRepository<City, Long>, CityRepositoryCustom {
 
-    @Query("SELECT c FROM City c WHERE c.name LIKE %:name%")
-    Page<City> findByNameContaining(@Param("name") String name, Pageable pageable);
+    // Координаты и губернатор загружаются тем же запросом, а не отдельным SELECT на каждую строку
+    @Override
+    @QueryHints(value = {
+            @QueryHint(name = "eclipselink.join-fetch", value = "c.coordinates"),
+            @QueryHint(name = "eclipselink.left-join-fetch", value = "c.governor")
+    }, forCounting = false)
+    Page<City> findAll(Pageable pageable);
+
+    // pattern должен быть уже в нижнем регистре и с экранированными % и _ (см. CityService)
+    @Query(value = "SELECT c FROM City c JOIN FETCH c.coordinates LEFT JOIN FETCH c.governor "
+            + "WHERE LOWER(c.name) LIKE :pattern ESCAPE '\\'",
+            countQuery = "SELECT COUNT(c) FROM City c WHERE LOWER(c.name) LIKE :pattern ESCAPE '\\'")
+    Page<City> searchByName(@Param("pattern") String pattern, Pageable pageable);
+
+    @Query("SELECT c FROM City c JOIN FETCH c.coordinates LEFT JOIN FETCH c.governor WHERE c.id IN :ids")
+    List<City> findAllWithRelationsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // k ближайших по индексу idx_coordinates_point (GiST, KNN-сортировка оператором <->)
+    @Query(value = "SELECT c.id FROM coordinates co JOIN cities c ON c.coordinates_id = co.id "
+            + "ORDER BY point(co.x, co.y) <-> point(:x, :y) LIMIT :k", nativeQuery = true)
+    List<Long> findNearestIds(@Param("x") double x, @Param("y") double y, @Param("k") int k);
+
+    @Query(value = "SELECT c.id FROM coordinates co JOIN cities c ON c.coordinates_id = co.id "
+            + "WHERE point(co.x, co.y) <@ box(point(:minX, :minY), point(:maxX, :maxY)) "
+            + "ORDER BY c.id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdsWithin(@Param("minX") double minX, @Param("minY") double minY,
+                             @Param("maxX") double maxX, @Param("maxY") double maxY,
+                             @Param("limit") int limit);
+
+    // Ревизия городов, координат и губернаторов (ETag списков): база плюс строки журнала, которые триггер
+    // добавляет в транзакции записи. Одна команда - один снимок, сумма согласована
+    @Query(value = "SELECT revision + (SELECT count(*) FROM cities_revision_log) FROM table_revision "
+            + "WHERE table_name = 'cities'", nativeQuery = true)
+    Long findCitiesRevision();
+
+    // Переносит зафиксированные строки журнала ревизий в базу; ревизия при этом не меняется
+    @Query(value = "SELECT compact_cities_revision()", nativeQuery = true)
+    Integer compactCitiesRevision();
 
     @Query(value = "SELECT get_average_meters_above_sea_level()", nativeQuery = true)
     Double getAverageMetersAboveSeaLevel();
@@ -27,8 +66,5 @@ public interface CityRepository extends JpaRepository<City, Long> {
     
     @Query(value = "SELECT calculate_distance_to_max_population_city()", nativeQuery = true)
     Double calculateDistanceToMaxPopulationCity();
-    
-    @Query(value = "SELECT delete_cities_by_climate(?1)", nativeQuery = true)
-    Integer deleteCitiesByClimateFunction(@Param("climate") String climate);
 
 }
@@ -0,0 +1,32 @@
+package com.example.citymanagement.repository;
+
+import com.example.citymanagement.model.City;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+public interface CityRepositoryCustom {
+
+    /**
+     * Keyset-выборка: города, идущие после пары (lastValue, lastId) в порядке (sortBy, id).
+     * При lastId == null возвращается первая страница.
+     */
+    List<City> findPageAfter(String sortBy, boolean descending, Object lastValue, Long lastId, int limit);
+
+    /**
+     * Поиск по подстроке с ранжированием по триграммному сходству (pg_trgm similarity) с исходным запросом.
+     */
+    Page<City> searchByNameRanked(String pattern, String query, Pageable pageable);
+
+    /**
+     * Страница для таблицы списка: только атрибуты City.ListView (fetch group EclipseLink), координаты - тем же запросом.
+     * pattern - как в searchByName, null - без поиска.
+     */
+    Page<City> findListPage(String pattern, Pageable pageable);
+
+    /**
+     * Оценка числа строк в таблице cities по статистике планировщика (pg_class.reltuples).
+     */
+    long estimateCount();
+}
@@ -0,0 +1,115 @@
+package com.example.citymanagement.repository;
+
+import com.example.citymanagement.model.City;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.queries.FetchGroup;
+import org.eclipse.persistence.queries.FetchGroupTracker;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+
+public class CityRepositoryCustomImpl implements CityRepositoryCustom {
+
+    // Связи City загружаются в том же SQL-запросе, что и страница городов
+    private static final String FETCH_RELATIONS = " JOIN FETCH c.coordinates LEFT JOIN FETCH c.governor";
+
+    // Атрибуты City.ListView; id и version fetch group загружает всегда
+    private static final List<String> LIST_VIEW_ATTRIBUTES =
+            List.of("name", "coordinates", "area", "population", "climate", "capital");
+
+    // Fetch groups поддерживают только классы, связанные при сборке (см. build.gradle.kts)
+    private static final boolean FETCH_GROUPS = FetchGroupTracker.class.isAssignableFrom(City.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<City> findPageAfter(String sortBy, boolean descending, Object lastValue, Long lastId, int limit) {
+        String cmp = descending ? "<" : ">";
+        String dir = descending ? "DESC" : "ASC";
+
+        StringBuilder jpql = new StringBuilder("SELECT c FROM City c").append(FETCH_RELATIONS);
+        if (lastId != null) {
+            if ("id".equals(sortBy)) {
+                jpql.append(" WHERE c.id ").append(cmp).append(" :lastId");
+            } else {
+                // Условие "c.key >= :v" даёт планировщику диапазон для индекса idx_cities_<key>,
+                // а второе условие отсекает уже отданные строки с тем же значением ключа
+                jpql.append(" WHERE c.").append(sortBy).append(' ').append(cmp).append("= :lastValue")
+                        .append(" AND (c.").append(sortBy).append(' ').append(cmp).append(" :lastValue")
+                        .append(" OR c.id ").append(cmp).append(" :lastId)");
+            }
+        }
+        if (!"id".equals(sortBy)) {
+            jpql.append(" ORDER BY c.").append(sortBy).append(' ').append(dir).append(", c.id ").append(dir);
+        } else {
+            jpql.append(" ORDER BY c.id ").append(dir);
+        }
+
+        TypedQuery<City> query = entityManager.createQuery(jpql.toString(), City.class);
+        if (lastId != null) {
+            query.setParameter("lastId", lastId);
+            if (!"id".equals(sortBy)) {
+                query.setParameter("lastValue", lastValue);
+            }
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public Page<City> searchByNameRanked(String pattern, String query, Pageable pageable) {
+        List<City> cities = entityManager.createQuery("SELECT c FROM City c" + FETCH_RELATIONS
+                        + " WHERE LOWER(c.name) LIKE :pattern ESCAPE '\\'"
+                        + " ORDER BY FUNCTION('similarity', LOWER(c.name), :query) DESC, c.id", City.class)
+                .setParameter("pattern", pattern)
+                .setParameter("query", query.toLowerCase())
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        long total = entityManager
+                .createQuery("SELECT COUNT(c) FROM City c WHERE LOWER(c.name) LIKE :pattern ESCAPE '\\'", Long.class)
+                .setParameter("pattern", pattern)
+                .getSingleResult();
+        return new PageImpl<>(cities, pageable, total);
+    }
+
+    @Override
+    public Page<City> findListPage(String pattern, Pageable pageable) {
+        String where = pattern != null ? " WHERE LOWER(c.name) LIKE :pattern ESCAPE '\\'" : "";
+        TypedQuery<City> query = entityManager.createQuery(QueryUtils.applySorting(
+                "SELECT c FROM City c JOIN FETCH c.coordinates" + where, pageable.getSort(), "c"), City.class);
+        TypedQuery<Long> count = entityManager.createQuery("SELECT COUNT(c) FROM City c" + where, Long.class);
+        if (pattern != null) {
+            query.setParameter("pattern", pattern);
+            count.setParameter("pattern", pattern);
+        }
+        // Остальные столбцы и губернатор не читаются; обращение к ним догрузило бы объект отдельным запросом
+        if (FETCH_GROUPS) {
+            FetchGroup fetchGroup = new FetchGroup("cityList");
+            LIST_VIEW_ATTRIBUTES.forEach(fetchGroup::addAttribute);
+            query.setHint(QueryHints.FETCH_GROUP, fetchGroup);
+        }
+
+        List<City> cities = query
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(cities, pageable, count::getSingleResult);
+    }
+
+    @Override
+    public long estimateCount() {
+        Object result = entityManager
+                .createNativeQuery("SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE relname = 'cities'")
+                .getSingleResult();
+        return result != null ? ((Number) result).longValue() : 0L;
+    }
+}
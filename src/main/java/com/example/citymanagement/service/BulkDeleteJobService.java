@@ -0,0 +1,254 @@
+package com.example.citymanagement.service;
+
+import com.example.citymanagement.dto.BulkDeleteJobStatus;
+import com.example.citymanagement.dto.BulkDeleteJobStatus.State;
+import com.example.citymanagement.dto.CityChangeEvent;
+import com.example.citymanagement.model.Climate;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Фоновое удаление городов по климату порциями по city.jobs.delete-chunk-size строк, каждая в своей транзакции.
+ * Блокировки строк держатся только на время одной порции, HTTP-поток не ждёт окончания удаления.
+ * Вместе с городами удаляются их координаты (внешний ключ направлен от cities к coordinates,
+ * поэтому сами они не удаляются). Прогресс рассылается в /topic/jobs/{jobId}.
+ */
+@Service
+public class BulkDeleteJobService {
+
+    private static final String DESTINATION_PREFIX = "/topic/jobs/";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private CityChangeBroadcaster cityChangeBroadcaster;
+
+    @Autowired
+    private CityAggregateService cityAggregateService;
+
+    @Autowired
+    private CityRankingService cityRankingService;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    @Value("${city.jobs.delete-chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${city.jobs.retained:100}")
+    private int retainedJobs;
+
+    // Один поток: задания выполняются по очереди и не конкурируют друг с другом за блокировки строк
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bulk-delete-jobs");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final Climate climate;
+        final long submittedAt = System.currentTimeMillis();
+        volatile boolean cancelRequested;
+        State state = State.QUEUED;
+        long total;
+        long deleted;
+        long coordinatesDeleted;
+        String error;
+        Long finishedAt;
+
+        Job(Climate climate) {
+            this.climate = climate;
+        }
+
+        synchronized boolean start() {
+            if (state != State.QUEUED) {
+                return false;
+            }
+            state = State.RUNNING;
+            return true;
+        }
+
+        synchronized void finish(State finalState, String message) {
+            if (state.isFinished()) {
+                return;
+            }
+            state = finalState;
+            error = message;
+            finishedAt = System.currentTimeMillis();
+        }
+
+        synchronized void progress(long cities, long coordinates) {
+            deleted += cities;
+            coordinatesDeleted += coordinates;
+        }
+
+        synchronized void setTotal(long total) {
+            this.total = total;
+        }
+
+        synchronized BulkDeleteJobStatus status() {
+            return new BulkDeleteJobStatus(id, climate, state, total, deleted, coordinatesDeleted, error,
+                    submittedAt, finishedAt);
+        }
+    }
+
+    private record ChunkResult(List<Long> cityIds, int coordinatesDeleted) {
+    }
+
+    public BulkDeleteJobStatus submit(Climate climate) {
+        evictFinishedJobs();
+        Job job = new Job(climate);
+        jobs.put(job.id, job);
+        executor.submit(() -> run(job));
+        return job.status();
+    }
+
+    public BulkDeleteJobStatus getStatus(String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null ? job.status() : null;
+    }
+
+    public List<BulkDeleteJobStatus> getJobs() {
+        return jobs.values().stream()
+                .map(Job::status)
+                .sorted(Comparator.comparingLong(BulkDeleteJobStatus::submittedAt).reversed())
+                .toList();
+    }
+
+    // Задание в очереди отменяется сразу, выполняющееся - перед следующей порцией
+    public BulkDeleteJobStatus cancel(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        job.cancelRequested = true;
+        synchronized (job) {
+            if (job.state == State.QUEUED) {
+                job.finish(State.CANCELLED, null);
+            }
+        }
+        BulkDeleteJobStatus status = job.status();
+        publish(status);
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.cancelRequested = true);
+        executor.shutdownNow();
+    }
+
+    private void run(Job job) {
+        if (!job.start()) {
+            return;
+        }
+        publish(job.status());
+
+        try {
+            // Список фиксируется при запуске: города, получившие этот климат позже, задание не затрагивает
+            List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM cities WHERE climate = ? ORDER BY id",
+                    Long.class, job.climate.toString());
+            job.setTotal(ids.size());
+
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                if (job.cancelRequested) {
+                    job.finish(State.CANCELLED, null);
+                    break;
+                }
+                List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+                ChunkResult result = transaction.execute(status -> deleteChunk(job.climate, chunk));
+                job.progress(result.cityIds().size(), result.coordinatesDeleted());
+                publish(job.status());
+            }
+            job.finish(State.COMPLETED, null);
+        } catch (Exception e) {
+            System.err.println("Bulk delete job " + job.id + " failed: " + e.getMessage());
+            job.finish(State.FAILED, e.getMessage());
+        } finally {
+            if (job.status().deleted() > 0) {
+                // Агрегаты пересчитываются один раз за задание, а не после каждой порции
+                cityAggregateService.onBulkChange();
+            }
+            publish(job.status());
+        }
+    }
+
+    private ChunkResult deleteChunk(Climate climate, List<Long> chunk) {
+        Long[] ids = chunk.toArray(new Long[0]);
+
+        // Повторная проверка климата: город могли изменить после запуска задания
+        List<Long[]> deleted = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "DELETE FROM cities WHERE id = ANY(?) AND climate = ? RETURNING id, coordinates_id");
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            ps.setString(2, climate.toString());
+            return ps;
+        }, (rs, rowNum) -> new Long[]{rs.getLong(1), rs.getLong(2)});
+
+        List<Long> cityIds = new ArrayList<>(deleted.size());
+        Long[] coordinateIds = new Long[deleted.size()];
+        for (int i = 0; i < deleted.size(); i++) {
+            cityIds.add(deleted.get(i)[0]);
+            coordinateIds[i] = deleted.get(i)[1];
+        }
+
+        int coordinatesDeleted = jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "DELETE FROM coordinates co WHERE co.id = ANY(?) "
+                            + "AND NOT EXISTS (SELECT 1 FROM cities c WHERE c.coordinates_id = co.id)");
+            ps.setArray(1, con.createArrayOf("bigint", coordinateIds));
+            return ps;
+        });
+
+        if (!cityIds.isEmpty()) {
+            cityRankingService.onDeleted(cityIds);
+            // Строки удалены в обход EclipseLink, поэтому кэш городов нужно сбросить
+            entityCacheService.evictCities();
+            cityChangeBroadcaster.publish(CityChangeEvent.Operation.BULK_DELETED, cityIds, null);
+        }
+        return new ChunkResult(cityIds, coordinatesDeleted);
+    }
+
+    private void publish(BulkDeleteJobStatus status) {
+        messagingTemplate.convertAndSend(DESTINATION_PREFIX + status.jobId(), status);
+    }
+
+    // Завершённые задания хранятся, пока их не больше city.jobs.retained
+    private void evictFinishedJobs() {
+        List<BulkDeleteJobStatus> finished = jobs.values().stream()
+                .map(Job::status)
+                .filter(status -> status.state().isFinished())
+                .sorted(Comparator.comparingLong(BulkDeleteJobStatus::finishedAt))
+                .toList();
+        for (int i = 0; i < finished.size() - retainedJobs; i++) {
+            jobs.remove(finished.get(i).jobId());
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.citymanagement.service;
+
+import com.example.citymanagement.model.City;
+import com.example.citymanagement.repository.CityRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Агрегаты для специальных операций, которые поддерживаются в памяти и обновляются при каждой записи,
+ * вместо полного прохода по cities на каждый запрос.
+ * Заполняется из базы при старте; расхождение с базой проверяется раз в city.aggregates.reconcile-ms.
+ * Изменение, которое перечитывание уже увидело в базе, повторно не применяется (см. commitGate).
+ */
+@Service
+public class CityAggregateService {
+
+    // car_code ограничен диапазоном 1..1000, поэтому хватает массива счётчиков
+    private static final int MAX_CAR_CODE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    // ReentrantLock, а не synchronized: под блокировкой идут запросы к базе, что закрепило бы виртуальный поток
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean loaded;
+
+    // Коммиты записей и чтение базы в reload не пересекаются: транзакция держит commitGate на чтение от
+    // beforeCommit до получения номера коммита, reload - на запись, пока читает базу. Всё, что reload прочитал,
+    // имеет номер не больше reloadedAt; изменение такого коммита, дошедшее до агрегатов позже reload, отбрасывается
+    private final ReentrantReadWriteLock commitGate = new ReentrantReadWriteLock();
+    private final AtomicLong commits = new AtomicLong();
+    private long reloadedAt;
+
+    private long altitudeSum;
+    private long altitudeCount;
+    private final long[] carCodeCounts = new long[MAX_CAR_CODE + 1];
+
+    // null - город с максимумом неизвестен (например, удалён) и будет заново найден при следующем чтении
+    private Snapshot maxArea;
+    private Snapshot maxPopulation;
+    private boolean maxAreaStale;
+    private boolean maxPopulationStale;
+
+    /**
+     * Значения города, от которых зависят агрегаты.
+     */
+    public record Snapshot(int area, int population, Long metersAboveSeaLevel, Long carCode, float x, long y) {
+
+        public static Snapshot of(City city) {
+            return new Snapshot(city.getArea(), city.getPopulation(), city.getMetersAboveSeaLevel(),
+                    city.getCarCode(), city.getCoordinates().getX(), city.getCoordinates().getY());
+        }
+
+        double distanceFromOrigin() {
+            double z = metersAboveSeaLevel != null ? metersAboveSeaLevel : 0;
+            return Math.sqrt((double) x * x + (double) y * y + z * z);
+        }
+    }
+
+    /**
+     * Номер коммита транзакции: одна синхронизация на транзакцию, раньше остальных, чтобы commitGate был
+     * отпущен до обратных вызовов (среди них может быть reload).
+     */
+    private final class CommitTicket implements TransactionSynchronization {
+
+        private long sequence = -1;
+        private boolean holding;
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            commitGate.readLock().lock();
+            holding = true;
+        }
+
+        @Override
+        public void afterCommit() {
+            sequence = commits.incrementAndGet();
+            release();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            release();
+        }
+
+        private void release() {
+            if (holding) {
+                holding = false;
+                commitGate.readLock().unlock();
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        lock.lock();
+        try {
+            commitGate.writeLock().lock();
+            try {
+                readTotals();
+                reloadedAt = commits.get();
+            } finally {
+                commitGate.writeLock().unlock();
+            }
+
+            maxArea = null;
+            maxPopulation = null;
+            maxAreaStale = true;
+            maxPopulationStale = true;
+            loaded = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void readTotals() {
+        jdbcTemplate.query("SELECT COALESCE(SUM(meters_above_sea_level), 0), COUNT(meters_above_sea_level) FROM cities",
+                rs -> {
+                    altitudeSum = rs.getLong(1);
+                    altitudeCount = rs.getLong(2);
+                });
+
+        Arrays.fill(carCodeCounts, 0);
+        jdbcTemplate.query("SELECT car_code, COUNT(*) FROM cities WHERE car_code IS NOT NULL GROUP BY car_code",
+                rs -> {
+                    carCodeCounts[rs.getInt(1)] = rs.getLong(2);
+                });
+    }
+
+    // Вызывается после сохранения города; previous == null для нового города
+    public void onSaved(Snapshot previous, Snapshot current) {
+        afterCommit(() -> {
+            if (previous != null) {
+                remove(previous);
+            }
+            add(current);
+        });
+    }
+
+    public void onDeleted(Snapshot deleted) {
+        afterCommit(() -> remove(deleted));
+    }
+
+    /**
+     * Коммит соединения мимо транзакций Spring (порция COPY импорта) и учёт добавленных городов,
+     * в том же порядке относительно reload, что и у транзакций.
+     */
+    public void commitAdded(Connection connection, List<Snapshot> added) throws SQLException {
+        long sequence;
+        commitGate.readLock().lock();
+        try {
+            connection.commit();
+            sequence = commits.incrementAndGet();
+        } finally {
+            commitGate.readLock().unlock();
+        }
+        apply(sequence, () -> added.forEach(this::add));
+    }
+
+    // Массовые изменения, которые не отслеживаются построчно, - пересчитываем всё после коммита
+    public void onBulkChange() {
+        TransactionCallbacks.afterCommit(this::reload);
+    }
+
+    public Double getAverageMetersAboveSeaLevel() {
+        lock.lock();
+        try {
+            ensureLoaded();
+            return altitudeCount == 0 ? 0.0 : (double) altitudeSum / altitudeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Long> getUniqueCarCodes() {
+        lock.lock();
+        try {
+            ensureLoaded();
+            List<Long> codes = new ArrayList<>();
+            for (int code = 1; code <= MAX_CAR_CODE; code++) {
+                if (carCodeCounts[code] > 0) {
+                    codes.add((long) code);
+                }
+            }
+            return codes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getDistanceToCityWithMaxArea() {
+        lock.lock();
+        try {
+            ensureLoaded();
+            if (maxAreaStale) {
+                maxArea = queryMax("area");
+                maxAreaStale = false;
+            }
+            return maxArea != null ? maxArea.distanceFromOrigin() : 0.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getDistanceToCityWithMaxPopulation() {
+        lock.lock();
+        try {
+            ensureLoaded();
+            if (maxPopulationStale) {
+                maxPopulation = queryMax("population");
+                maxPopulationStale = false;
+            }
+            return maxPopulation != null ? maxPopulation.distanceFromOrigin() : 0.0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сверка с базой: при расхождении с функциями PostgreSQL агрегаты перечитываются.
+     */
+    @Scheduled(fixedDelayString = "${city.aggregates.reconcile-ms:300000}", initialDelayString = "${city.aggregates.reconcile-ms:300000}")
+    public void reconcile() {
+        Double dbAverage = cityRepository.getAverageMetersAboveSeaLevel();
+        List<Long> dbCarCodes = cityRepository.getUniqueCarCodes();
+
+        double average = getAverageMetersAboveSeaLevel();
+        List<Long> carCodes = getUniqueCarCodes();
+        boolean averageDrift = dbAverage != null && Math.abs(dbAverage - average) > 1e-6;
+        if (averageDrift || !Objects.equals(dbCarCodes, carCodes)) {
+            System.err.println("City aggregates drifted from database (average " + average + " vs " + dbAverage
+                    + ", car codes " + carCodes.size() + " vs " + dbCarCodes.size() + "), reloading");
+            reload();
+        }
+    }
+
+    // Изменение применяется после коммита с его номером; без транзакции запись уже зафиксирована
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(commits.incrementAndGet(), change);
+            return;
+        }
+        CommitTicket ticket = commitTicket();
+        TransactionCallbacks.afterCommit(() -> apply(ticket.sequence, change));
+    }
+
+    // Синхронизации приостановленной внешней транзакции здесь не видны, поэтому у вложенной свой номер
+    private CommitTicket commitTicket() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof CommitTicket ticket) {
+                return ticket;
+            }
+        }
+        CommitTicket ticket = new CommitTicket();
+        TransactionSynchronizationManager.registerSynchronization(ticket);
+        return ticket;
+    }
+
+    private void apply(long sequence, Runnable change) {
+        lock.lock();
+        try {
+            // Коммит уже учтён перечитыванием; до первой загрузки ensureLoaded прочитает базу целиком
+            if (loaded && sequence > reloadedAt) {
+                change.run();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            reload();
+        }
+    }
+
+    private void add(Snapshot city) {
+        if (city.metersAboveSeaLevel() != null) {
+            altitudeSum += city.metersAboveSeaLevel();
+            altitudeCount++;
+        }
+        if (city.carCode() != null) {
+            carCodeCounts[city.carCode().intValue()]++;
+        }
+        if (!maxAreaStale && (maxArea == null || city.area() > maxArea.area())) {
+            maxArea = city;
+        }
+        if (!maxPopulationStale && (maxPopulation == null || city.population() > maxPopulation.population())) {
+            maxPopulation = city;
+        }
+    }
+
+    private void remove(Snapshot city) {
+        if (city.metersAboveSeaLevel() != null) {
+            altitudeSum -= city.metersAboveSeaLevel();
+            altitudeCount--;
+        }
+        if (city.carCode() != null) {
+            carCodeCounts[city.carCode().intValue()]--;
+        }
+        // Удалён город с максимумом (или равный ему) - новый максимум найдём запросом по индексу при чтении
+        if (maxArea != null && city.area() >= maxArea.area()) {
+            maxAreaStale = true;
+        }
+        if (maxPopulation != null && city.population() >= maxPopulation.population()) {
+            maxPopulationStale = true;
+        }
+    }
+
+    // Одна строка по индексу idx_cities_area / idx_cities_population
+    private Snapshot queryMax(String column) {
+        List<Snapshot> rows = jdbcTemplate.query("""
+                SELECT c.area, c.population, c.meters_above_sea_level, c.car_code, co.x, co.y
+                FROM cities c
+                JOIN coordinates co ON c.coordinates_id = co.id
+                ORDER BY c.""" + column + " DESC LIMIT 1",
+                (rs, rowNum) -> new Snapshot(rs.getInt("area"), rs.getInt("population"),
+                        rs.getObject("meters_above_sea_level", Long.class),
+                        rs.getObject("car_code", Long.class),
+                        rs.getFloat("x"), rs.getLong("y")));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+}
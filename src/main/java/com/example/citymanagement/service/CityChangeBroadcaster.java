@@ -0,0 +1,160 @@
+package com.example.citymanagement.service;
+
+import com.example.citymanagement.dto.CityChangeBatch;
+import com.example.citymanagement.dto.CityChangeEvent;
+import com.example.citymanagement.model.City;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Собирает изменения городов после коммита транзакции и рассылает их в /topic/city-updates
+ * одним сообщением за окно city.broadcast.window-ms (или раньше, при накоплении city.broadcast.max-batch событий).
+ */
+@Service
+public class CityChangeBroadcaster {
+
+    private static final String DESTINATION = "/topic/city-updates";
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${city.broadcast.max-batch:500}")
+    private int maxBatch;
+
+    private final Object lock = new Object();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private List<CityChangeEvent> pending = new ArrayList<>();
+
+    // Номер последнего зафиксированного изменения
+    private final AtomicLong revision = new AtomicLong();
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        FunctionCounter.builder("city.broadcast.events", eventsReceived, AtomicLong::get)
+                .description("City change events received for broadcast")
+                .register(meterRegistry);
+        FunctionCounter.builder("city.broadcast.frames", framesSent, AtomicLong::get)
+                .description("STOMP frames sent to /topic/city-updates")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("city.broadcast.flush")
+                .description("Time to hand one merged frame to the broker")
+                .register(meterRegistry);
+    }
+
+    public void publish(CityChangeEvent.Operation operation, List<Long> ids, City city) {
+        // Клиенты не должны видеть изменения, которые ещё могут откатиться
+        TransactionCallbacks.afterCommit(() -> enqueue(operation, ids, city));
+    }
+
+    /**
+     * Изменение для publishAll.
+     */
+    public record Change(CityChangeEvent.Operation operation, List<Long> ids, City city) {
+    }
+
+    // Изменения одной транзакции уходят клиентам одним сообщением, без ожидания конца окна
+    public void publishAll(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        TransactionCallbacks.afterCommit(() -> {
+            synchronized (lock) {
+                changes.forEach(change -> add(change.operation(), change.ids(), change.city()));
+            }
+            flush();
+        });
+    }
+
+    private void enqueue(CityChangeEvent.Operation operation, List<Long> ids, City city) {
+        boolean full;
+        synchronized (lock) {
+            add(operation, ids, city);
+            full = pending.size() >= maxBatch;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    // Вызывается под lock: ревизия выдаётся под той же блокировкой, чтобы порядок в очереди совпадал с порядком ревизий
+    private void add(CityChangeEvent.Operation operation, List<Long> ids, City city) {
+        eventsReceived.incrementAndGet();
+        pending.add(new CityChangeEvent(operation, ids, revision.incrementAndGet(), city));
+    }
+
+    @Scheduled(fixedDelayString = "${city.broadcast.window-ms:100}")
+    public void flush() {
+        // Отправки сериализуются, чтобы пачки уходили в порядке ревизий
+        flushLock.lock();
+        try {
+            List<CityChangeEvent> events;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                events = pending;
+                pending = new ArrayList<>();
+            }
+
+            CityChangeBatch batch = new CityChangeBatch(events.get(0).revision(),
+                    events.get(events.size() - 1).revision(), coalesce(events));
+            flushTimer.record(() -> messagingTemplate.convertAndSend(DESTINATION, batch));
+            framesSent.incrementAndGet();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Оставляет по одному событию на город: последнее изменение заменяет предыдущие
+    private static List<CityChangeEvent> coalesce(List<CityChangeEvent> events) {
+        Map<Object, CityChangeEvent> merged = new LinkedHashMap<>();
+        for (CityChangeEvent event : events) {
+            if (event.operation() == CityChangeEvent.Operation.BULK_DELETED
+                    || event.operation() == CityChangeEvent.Operation.BULK_CREATED) {
+                event.ids().forEach(merged::remove);
+                merged.put(new Object(), event);
+                continue;
+            }
+
+            Long id = event.ids().get(0);
+            CityChangeEvent previous = merged.remove(id);
+            if (previous != null && previous.operation() == CityChangeEvent.Operation.CREATED) {
+                if (event.operation() == CityChangeEvent.Operation.DELETED) {
+                    // Город создан и удалён в пределах окна - клиентам о нём знать не нужно
+                    continue;
+                }
+                event = new CityChangeEvent(CityChangeEvent.Operation.CREATED, event.ids(), event.revision(), event.city());
+            }
+            merged.put(id, event);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    public long getEventsReceived() {
+        return eventsReceived.get();
+    }
+
+    public long getFramesSent() {
+        return framesSent.get();
+    }
+}
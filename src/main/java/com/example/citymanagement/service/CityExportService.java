@@ -0,0 +1,175 @@
+package com.example.citymanagement.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Потоковая выгрузка таблицы cities в NDJSON или CSV.
+ * Строки читаются серверным курсором PostgreSQL порциями по FETCH_SIZE и сразу пишутся в ответ,
+ * без создания сущностей JPA, поэтому расход памяти не зависит от размера таблицы.
+ */
+@Service
+public class CityExportService {
+
+    public static final int FETCH_SIZE = 1000;
+
+    private static final String EXPORT_QUERY = """
+            SELECT c.id, c.name, c.creation_date, c.area, c.population, c.establishment_date, c.capital,
+                   c.meters_above_sea_level, c.car_code, c.climate, c.standard_of_living,
+                   co.id AS coordinates_id, co.x, co.y, h.id AS governor_id, h.height
+            FROM cities c
+            JOIN coordinates co ON c.coordinates_id = co.id
+            LEFT JOIN humans h ON c.governor_id = h.id
+            ORDER BY c.id
+            """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public void exportNdjson(OutputStream output) {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(output)) {
+            streamRows(rs -> writeJsonRow(json, rs), json::flush);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void exportCsv(OutputStream output) {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+            writer.write(String.join(",", CityImportService.CSV_COLUMNS));
+            writer.write('\n');
+            streamRows(rs -> writeCsvRow(writer, rs), writer::flush);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void streamRows(RowWriter rowWriter, Flusher flusher) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            // Серверный курсор PostgreSQL работает только вне режима autocommit
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(EXPORT_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    long rows = 0;
+                    while (rs.next()) {
+                        rowWriter.write(rs);
+                        // Первую строку отдаём сразу, дальше - порциями по размеру выборки
+                        if (++rows == 1 || rows % FETCH_SIZE == 0) {
+                            flusher.flush();
+                        }
+                    }
+                    flusher.flush();
+                }
+                con.commit();
+            } catch (IOException e) {
+                con.rollback();
+                throw new UncheckedIOException(e);
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    private static void writeJsonRow(JsonGenerator json, ResultSet rs) throws SQLException, IOException {
+        json.writeStartObject();
+        json.writeNumberField("id", rs.getLong("id"));
+        json.writeStringField("name", rs.getString("name"));
+
+        json.writeObjectFieldStart("coordinates");
+        json.writeNumberField("id", rs.getLong("coordinates_id"));
+        json.writeNumberField("x", rs.getFloat("x"));
+        json.writeNumberField("y", rs.getLong("y"));
+        json.writeEndObject();
+
+        json.writeStringField("creationDate", toIso(rs.getTimestamp("creation_date")));
+        json.writeNumberField("area", rs.getInt("area"));
+        json.writeNumberField("population", rs.getInt("population"));
+        json.writeStringField("establishmentDate", toIso(rs.getTimestamp("establishment_date")));
+        json.writeObjectField("capital", rs.getObject("capital"));
+        json.writeObjectField("metersAboveSeaLevel", rs.getObject("meters_above_sea_level"));
+        json.writeObjectField("carCode", rs.getObject("car_code"));
+        json.writeStringField("climate", rs.getString("climate"));
+        json.writeStringField("standardOfLiving", rs.getString("standard_of_living"));
+
+        long governorId = rs.getLong("governor_id");
+        if (rs.wasNull()) {
+            json.writeNullField("governor");
+        } else {
+            json.writeObjectFieldStart("governor");
+            json.writeNumberField("id", governorId);
+            json.writeNumberField("height", rs.getFloat("height"));
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+        json.writeRaw('\n');
+    }
+
+    // Колонки совпадают с форматом импорта, поэтому выгрузку можно загрузить обратно
+    private static void writeCsvRow(Writer writer, ResultSet rs) throws SQLException, IOException {
+        writer.write(CityImportService.csvValue(rs.getString("name")));
+        writer.write(',');
+        writer.write(Float.toString(rs.getFloat("x")));
+        writer.write(',');
+        writer.write(Long.toString(rs.getLong("y")));
+        writer.write(',');
+        writer.write(Integer.toString(rs.getInt("area")));
+        writer.write(',');
+        writer.write(Integer.toString(rs.getInt("population")));
+        writer.write(',');
+        writer.write(nullToEmpty(toIso(rs.getTimestamp("establishment_date"))));
+        writer.write(',');
+        writer.write(nullToEmpty(rs.getObject("capital")));
+        writer.write(',');
+        writer.write(nullToEmpty(rs.getObject("meters_above_sea_level")));
+        writer.write(',');
+        writer.write(nullToEmpty(rs.getObject("car_code")));
+        writer.write(',');
+        writer.write(nullToEmpty(rs.getString("climate")));
+        writer.write(',');
+        writer.write(nullToEmpty(rs.getString("standard_of_living")));
+        writer.write(',');
+        writer.write(nullToEmpty(rs.getObject("governor_id")));
+        writer.write('\n');
+    }
+
+    private static String toIso(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime().toString() : null;
+    }
+
+    private static String nullToEmpty(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+
+    @FunctionalInterface
+    private interface Flusher {
+        void flush() throws IOException;
+    }
+}
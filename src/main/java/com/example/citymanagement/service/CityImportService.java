@@ -0,0 +1,391 @@
+package com.example.citymanagement.service;
+
+import com.example.citymanagement.dto.CityChangeEvent;
+import com.example.citymanagement.dto.CityImportResult;
+import com.example.citymanagement.model.City;
+import com.example.citymanagement.model.Climate;
+import com.example.citymanagement.model.Coordinates;
+import com.example.citymanagement.model.Human;
+import com.example.citymanagement.model.StandardOfLiving;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Потоковый импорт городов из NDJSON или CSV через PostgreSQL COPY.
+ * Строки читаются и проверяются по одной, а в базу пишутся порциями по CHUNK_SIZE,
+ * поэтому файл целиком в памяти не держится.
+ */
+@Service
+public class CityImportService {
+
+    public static final int CHUNK_SIZE = 5000;
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    // Порядок колонок CSV-файла импорта (первая строка файла - заголовок); экспорт пишет те же колонки
+    static final List<String> CSV_COLUMNS = List.of(
+            "name", "x", "y", "area", "population", "establishmentDate", "capital",
+            "metersAboveSeaLevel", "carCode", "climate", "standardOfLiving", "governorId");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private CityChangeBroadcaster cityChangeBroadcaster;
+
+    @Autowired
+    private CityAggregateService cityAggregateService;
+
+    @Autowired
+    private CityRankingService cityRankingService;
+
+    public CityImportResult importNdjson(InputStream input) throws IOException {
+        return importRows(input, false);
+    }
+
+    public CityImportResult importCsv(InputStream input) throws IOException {
+        return importRows(input, true);
+    }
+
+    private CityImportResult importRows(InputStream input, boolean csv) throws IOException {
+        ImportState state = new ImportState();
+        List<ParsedRow> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            Map<String, Integer> header = null;
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (csv && header == null) {
+                    header = parseCsvHeader(line);
+                    continue;
+                }
+
+                City city;
+                try {
+                    city = csv ? parseCsvRow(line, header) : objectMapper.readValue(line, City.class);
+                } catch (Exception e) {
+                    state.reject(lineNumber, "Cannot parse row: " + e.getMessage());
+                    continue;
+                }
+
+                String violations = validate(city);
+                if (violations != null) {
+                    state.reject(lineNumber, violations);
+                    continue;
+                }
+
+                chunk.add(new ParsedRow(lineNumber, city));
+                if (chunk.size() >= CHUNK_SIZE) {
+                    writeChunk(chunk, state);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, state);
+        }
+
+        if (state.imported > 0) {
+            // id городов назначает COPY, поэтому рейтинги перечитываются один раз за импорт
+            cityRankingService.onBulkChange();
+            // Одно уведомление на весь импорт: клиенты перезагрузят текущую страницу
+            cityChangeBroadcaster.publish(CityChangeEvent.Operation.BULK_CREATED, List.of(), null);
+        }
+        return new CityImportResult(state.imported, state.failed, state.errors);
+    }
+
+    private String validate(City city) {
+        if (city.getCreationDate() == null) {
+            city.setCreationDate(LocalDateTime.now());
+        }
+        Set<ConstraintViolation<?>> violations = new HashSet<>(validator.validate(city));
+        if (city.getCoordinates() != null) {
+            violations.addAll(validator.validate(city.getCoordinates()));
+        }
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    // Одна порция - одна транзакция: сначала координаты с заранее выделенными id, затем города.
+    // Если базу не устроила строка порции (ошибка данных или ограничения), порция делится пополам и пишется
+    // заново, пока не останутся отдельные строки: корректные строки импортируются, а в отчёт попадают
+    // номера строк, которые база действительно отклонила. Одна плохая строка на порцию - около 2*log2(CHUNK_SIZE)
+    // лишних транзакций
+    private void writeChunk(List<ParsedRow> chunk, ImportState state) {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                boolean autoCommit = con.getAutoCommit();
+                con.setAutoCommit(false);
+                try {
+                    copyChunk(con, chunk);
+                    // Коммит вместе с учётом в агрегатах: порядок относительно их перечитывания важен
+                    cityAggregateService.commitAdded(con, chunk.stream()
+                            .map(row -> CityAggregateService.Snapshot.of(row.city()))
+                            .toList());
+                } catch (SQLException e) {
+                    con.rollback();
+                    throw e;
+                } catch (IOException e) {
+                    con.rollback();
+                    throw new SQLException(e.getMessage(), e);
+                } finally {
+                    con.setAutoCommit(autoCommit);
+                }
+                return null;
+            });
+            state.imported += chunk.size();
+        } catch (Exception e) {
+            if (chunk.size() > 1 && rowDataError(e)) {
+                int half = chunk.size() / 2;
+                writeChunk(chunk.subList(0, half), state);
+                writeChunk(chunk.subList(half, chunk.size()), state);
+            } else if (chunk.size() == 1) {
+                state.reject(chunk.get(0).line(), "Rejected by the database: " + rootMessage(e));
+            } else {
+                // Ошибка не из-за данных (соединение, права): делить порцию бессмысленно
+                state.reject(chunk.get(0).line(), "Chunk of " + chunk.size() + " rows starting at this line failed: "
+                        + rootMessage(e));
+                state.failed += chunk.size() - 1;
+            }
+        }
+    }
+
+    // SQLSTATE класса 22 (ошибка данных: переполнение, слишком длинная строка) или 23 (нарушение ограничения)
+    private static boolean rowDataError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql && sql.getSQLState() != null) {
+                return sql.getSQLState().startsWith("22") || sql.getSQLState().startsWith("23");
+            }
+        }
+        return false;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage();
+    }
+
+    private void copyChunk(Connection con, List<ParsedRow> chunk) throws SQLException, IOException {
+        long[] coordinateIds = reserveCoordinateIds(con, chunk.size());
+        Set<Long> governorIds = existingGovernorIds(con, chunk);
+
+        StringBuilder coordinates = new StringBuilder();
+        StringBuilder cities = new StringBuilder();
+        for (int i = 0; i < chunk.size(); i++) {
+            City city = chunk.get(i).city();
+            Coordinates c = city.getCoordinates();
+            coordinates.append(coordinateIds[i]).append(',').append(c.getX()).append(',').append(c.getY()).append('\n');
+
+            // Как и в CityService.saveCity, несуществующий губернатор сбрасывается
+            Human governor = city.getGovernor();
+            Long governorId = governor != null && governorIds.contains(governor.getId()) ? governor.getId() : null;
+
+            cities.append(csvValue(city.getName())).append(',')
+                    .append(coordinateIds[i]).append(',')
+                    .append(city.getCreationDate()).append(',')
+                    .append(city.getArea()).append(',')
+                    .append(city.getPopulation()).append(',')
+                    .append(csvNullable(city.getEstablishmentDate())).append(',')
+                    .append(csvNullable(city.getCapital())).append(',')
+                    .append(csvNullable(city.getMetersAboveSeaLevel())).append(',')
+                    .append(csvNullable(city.getCarCode())).append(',')
+                    .append(csvNullable(city.getClimate())).append(',')
+                    .append(csvNullable(city.getStandardOfLiving())).append(',')
+                    .append(csvNullable(governorId)).append('\n');
+        }
+
+        CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+        copyManager.copyIn("COPY coordinates (id, x, y) FROM STDIN WITH (FORMAT csv)",
+                new StringReader(coordinates.toString()));
+        copyManager.copyIn("COPY cities (name, coordinates_id, creation_date, area, population, establishment_date, "
+                        + "capital, meters_above_sea_level, car_code, climate, standard_of_living, governor_id) "
+                        + "FROM STDIN WITH (FORMAT csv)",
+                new StringReader(cities.toString()));
+    }
+
+    private long[] reserveCoordinateIds(Connection con, int count) throws SQLException {
+        long[] ids = new long[count];
+        try (PreparedStatement ps = con.prepareStatement(
+                "SELECT nextval(pg_get_serial_sequence('coordinates', 'id')) FROM generate_series(1, ?)")) {
+            ps.setInt(1, count);
+            try (ResultSet rs = ps.executeQuery()) {
+                int i = 0;
+                while (rs.next()) {
+                    ids[i++] = rs.getLong(1);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Set<Long> existingGovernorIds(Connection con, List<ParsedRow> chunk) throws SQLException {
+        Long[] requested = chunk.stream()
+                .map(row -> row.city().getGovernor())
+                .filter(governor -> governor != null && governor.getId() != null)
+                .map(Human::getId)
+                .distinct()
+                .toArray(Long[]::new);
+        Set<Long> existing = new HashSet<>();
+        if (requested.length == 0) {
+            return existing;
+        }
+
+        Array array = con.createArrayOf("bigint", requested);
+        try (PreparedStatement ps = con.prepareStatement("SELECT id FROM humans WHERE id = ANY(?)")) {
+            ps.setArray(1, array);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getLong(1));
+                }
+            }
+        } finally {
+            array.free();
+        }
+        return existing;
+    }
+
+    private static String csvNullable(Object value) {
+        // Пустое поле без кавычек COPY в формате csv воспринимает как NULL
+        return value == null ? "" : csvValue(value.toString());
+    }
+
+    static String csvValue(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static Map<String, Integer> parseCsvHeader(String line) {
+        List<String> names = splitCsvLine(line);
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            header.put(names.get(i).trim(), i);
+        }
+        if (!header.keySet().containsAll(List.of("name", "x", "y", "area", "population"))) {
+            throw new IllegalArgumentException("CSV header must contain columns: " + CSV_COLUMNS);
+        }
+        return header;
+    }
+
+    private static City parseCsvRow(String line, Map<String, Integer> header) {
+        List<String> values = splitCsvLine(line);
+        Map<String, String> row = new HashMap<>();
+        header.forEach((name, index) -> {
+            if (index < values.size() && !values.get(index).isEmpty()) {
+                row.put(name, values.get(index));
+            }
+        });
+
+        City city = new City();
+        city.setName(row.get("name"));
+        city.setCoordinates(new Coordinates(Float.parseFloat(row.get("x")), Long.parseLong(row.get("y"))));
+        city.setArea(parseOrNull(row.get("area"), Integer::valueOf));
+        city.setPopulation(parseOrNull(row.get("population"), Integer::valueOf));
+        city.setEstablishmentDate(parseOrNull(row.get("establishmentDate"), LocalDateTime::parse));
+        city.setCapital(parseOrNull(row.get("capital"), Boolean::valueOf));
+        city.setMetersAboveSeaLevel(parseOrNull(row.get("metersAboveSeaLevel"), Long::valueOf));
+        city.setCarCode(parseOrNull(row.get("carCode"), Long::valueOf));
+        city.setClimate(parseOrNull(row.get("climate"), Climate::valueOf));
+        city.setStandardOfLiving(parseOrNull(row.get("standardOfLiving"), StandardOfLiving::valueOf));
+        Long governorId = parseOrNull(row.get("governorId"), Long::valueOf);
+        if (governorId != null) {
+            Human governor = new Human();
+            governor.setId(governorId);
+            city.setGovernor(governor);
+        }
+        return city;
+    }
+
+    private static <T> T parseOrNull(String value, Function<String, T> parser) {
+        return value == null ? null : parser.apply(value.trim());
+    }
+
+    // Разбор строки CSV с поддержкой полей в двойных кавычках
+    private static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    current.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(ch);
+            }
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private record ParsedRow(long line, City city) {
+    }
+
+    private static class ImportState {
+        private long imported;
+        private long failed;
+        private final List<CityImportResult.RowError> errors = new ArrayList<>();
+
+        private void reject(long line, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new CityImportResult.RowError(line, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.citymanagement.service;
+
+import com.example.citymanagement.dto.CityChangeEvent;
+import com.example.citymanagement.model.City;
+import com.example.citymanagement.model.Climate;
+import com.example.citymanagement.model.Coordinates;
+import com.example.citymanagement.model.Human;
+import com.example.citymanagement.model.StandardOfLiving;
+import com.example.citymanagement.repository.CityRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Частичное обновление города по JSON Merge Patch (RFC 7386) одним SQL-запросом.
+ * Меняются только переданные столбцы, губернатор задаётся ссылкой (governor_id) без загрузки,
+ * отсутствие города или чужая версия видны по пустому результату UPDATE.
+ * Прежние значения для агрегатов и новый город для ответа возвращает тот же запрос.
+ */
+@Service
+@Transactional
+public class CityPatchService {
+
+    private record Column(String name, Class<?> type, boolean nullable) {
+    }
+
+    private static final Map<String, Column> CITY_COLUMNS = Map.of(
+            "name", new Column("name", String.class, false),
+            "creationDate", new Column("creation_date", LocalDateTime.class, false),
+            "area", new Column("area", Integer.class, false),
+            "population", new Column("population", Integer.class, false),
+            "establishmentDate", new Column("establishment_date", LocalDateTime.class, true),
+            "capital", new Column("capital", Boolean.class, true),
+            "metersAboveSeaLevel", new Column("meters_above_sea_level", Long.class, true),
+            "carCode", new Column("car_code", Long.class, true),
+            "climate", new Column("climate", Climate.class, true),
+            "standardOfLiving", new Column("standard_of_living", StandardOfLiving.class, true));
+
+    private static final Map<String, Column> COORDINATE_COLUMNS = Map.of(
+            "x", new Column("x", Float.class, false),
+            "y", new Column("y", Long.class, false));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    @Autowired
+    private CityChangeBroadcaster cityChangeBroadcaster;
+
+    @Autowired
+    private CityAggregateService cityAggregateService;
+
+    @Autowired
+    private CityRankingService cityRankingService;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    private record PatchedRow(City city, CityAggregateService.Snapshot previous) {
+    }
+
+    /**
+     * Применяет merge patch к городу. expectedVersion - из If-Match или поля version патча.
+     * Ошибки: IllegalArgumentException - некорректный патч, NoSuchElementException - города нет,
+     * OptimisticLockingFailureException - версия не совпала.
+     */
+    public City patchCity(Long id, JsonNode patch, Long expectedVersion) {
+        if (patch == null || !patch.isObject()) {
+            throw new IllegalArgumentException("Merge patch must be a JSON object");
+        }
+
+        List<String> citySets = new ArrayList<>();
+        List<Object> cityArgs = new ArrayList<>();
+        List<String> coordinateSets = new ArrayList<>();
+        List<Object> coordinateArgs = new ArrayList<>();
+        Long version = expectedVersion;
+
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String name = field.getKey();
+            JsonNode value = field.getValue();
+            switch (name) {
+                case "id" -> {
+                    if (!value.isNull() && value.asLong() != id) {
+                        throw new IllegalArgumentException("City id cannot be changed");
+                    }
+                }
+                case "version" -> {
+                    if (!value.isNull() && version == null) {
+                        version = value.asLong();
+                    }
+                }
+                case "governor" -> {
+                    citySets.add("governor_id = ?");
+                    cityArgs.add(governorId(value));
+                }
+                case "coordinates" -> {
+                    if (!value.isObject()) {
+                        throw new IllegalArgumentException("coordinates: must be an object, coordinates cannot be removed");
+                    }
+                    Iterator<Map.Entry<String, JsonNode>> coordinateFields = value.fields();
+                    while (coordinateFields.hasNext()) {
+                        Map.Entry<String, JsonNode> coordinate = coordinateFields.next();
+                        if (coordinate.getKey().equals("id")) {
+                            continue;
+                        }
+                        Column column = COORDINATE_COLUMNS.get(coordinate.getKey());
+                        if (column == null) {
+                            throw new IllegalArgumentException("Unknown field: coordinates." + coordinate.getKey());
+                        }
+                        coordinateSets.add(column.name() + " = ?");
+                        coordinateArgs.add(convert(Coordinates.class, coordinate.getKey(), column, coordinate.getValue()));
+                    }
+                }
+                default -> {
+                    Column column = CITY_COLUMNS.get(name);
+                    if (column == null) {
+                        throw new IllegalArgumentException("Unknown field: " + name);
+                    }
+                    citySets.add(column.name() + " = ?");
+                    cityArgs.add(convert(City.class, name, column, value));
+                }
+            }
+        }
+
+        if (citySets.isEmpty() && coordinateSets.isEmpty()) {
+            // Пустой патч ничего не меняет: достаточно проверить, что город есть
+            City city = cityRepository.findById(id)
+                    .orElseThrow(() -> new NoSuchElementException("City not found with id: " + id));
+            if (version != null && !version.equals(city.getVersion())) {
+                throw versionConflict(id, city.getVersion(), version);
+            }
+            return city;
+        }
+
+        List<Object> args = new ArrayList<>(cityArgs);
+        args.add(id);
+        // Прежние значения - из той же версии строки, что обновляется (o.version = c.version), а не из соседнего
+        // CTE: порядок выполнения соседних CTE не определён, блокировка в одном могла не увидеть строку другого
+        StringBuilder sql = new StringBuilder("WITH city AS (UPDATE cities c SET ");
+        // Версия растёт и при изменении одних координат: меняется представление города, а значит и ETag
+        citySets.add("version = c.version + 1");
+        sql.append(String.join(", ", citySets)).append("""
+                 FROM cities o JOIN coordinates oc ON oc.id = o.coordinates_id
+                WHERE c.id = ? AND o.id = c.id AND o.version = c.version""");
+        if (version != null) {
+            sql.append(" AND c.version = ?");
+            args.add(version);
+        }
+        sql.append("""
+
+                RETURNING c.*, o.area AS old_area, o.population AS old_population,
+                       o.meters_above_sea_level AS old_meters_above_sea_level, o.car_code AS old_car_code,
+                       oc.x AS old_x, oc.y AS old_y)""");
+        if (!coordinateSets.isEmpty()) {
+            sql.append(", coords AS (UPDATE coordinates SET ").append(String.join(", ", coordinateSets))
+                    .append(" WHERE id = (SELECT coordinates_id FROM city) RETURNING x, y)");
+            args.addAll(coordinateArgs);
+        }
+        String coordinates = coordinateSets.isEmpty() ? "co.x AS x, co.y AS y"
+                : "COALESCE(coords.x, co.x) AS x, COALESCE(coords.y, co.y) AS y";
+        sql.append("""
+
+                SELECT city.*, %s, h.height AS governor_height
+                FROM city
+                JOIN coordinates co ON co.id = city.coordinates_id
+                %s
+                LEFT JOIN humans h ON h.id = city.governor_id
+                """.formatted(coordinates, coordinateSets.isEmpty() ? "" : "LEFT JOIN coords ON TRUE"));
+
+        List<PatchedRow> rows = jdbcTemplate.query(sql.toString(), CityPatchService::mapRow, args.toArray());
+        if (rows.isEmpty() && version == null) {
+            // Без If-Match промах значит, что строку между снимком запроса и её блокировкой изменила другая
+            // транзакция (соединённая копия o осталась прежней версии). Новый запрос видит новый снимок
+            rows = jdbcTemplate.query(sql.toString(), CityPatchService::mapRow, args.toArray());
+        }
+        if (rows.isEmpty()) {
+            // Запрос ничего не обновил; второй запрос нужен только чтобы отличить 404 от 412
+            List<Long> versions = jdbcTemplate.queryForList("SELECT version FROM cities WHERE id = ?", Long.class, id);
+            if (versions.isEmpty()) {
+                throw new NoSuchElementException("City not found with id: " + id);
+            }
+            throw versionConflict(id, versions.get(0), version);
+        }
+
+        PatchedRow row = rows.get(0);
+        City city = row.city();
+        // Строка изменена в обход EclipseLink
+        entityCacheService.evictCity(city.getId(), city.getCoordinates().getId());
+        cityAggregateService.onSaved(row.previous(), CityAggregateService.Snapshot.of(city));
+        cityRankingService.onSaved(city);
+        cityChangeBroadcaster.publish(CityChangeEvent.Operation.UPDATED, List.of(city.getId()), city);
+        return city;
+    }
+
+    private Object convert(Class<?> type, String property, Column column, JsonNode value) {
+        Object converted = value.isNull() ? null : objectMapper.convertValue(value, column.type());
+        if (converted == null && !column.nullable()) {
+            throw new IllegalArgumentException(property + ": cannot be null");
+        }
+        Set<? extends ConstraintViolation<?>> violations = validator.validateValue(type, property, converted);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(violation -> property + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        return converted instanceof Enum<?> constant ? constant.name() : converted;
+    }
+
+    // null убирает губернатора, {"id": N} ссылается на существующего человека (проверяет внешний ключ)
+    private static Long governorId(JsonNode value) {
+        if (value.isNull()) {
+            return null;
+        }
+        if (!value.isObject() || !value.path("id").canConvertToLong()) {
+            throw new IllegalArgumentException("governor: must be null or an object with id");
+        }
+        return value.get("id").asLong();
+    }
+
+    private static OptimisticLockingFailureException versionConflict(Long id, Long current, Long expected) {
+        if (expected == null) {
+            return new OptimisticLockingFailureException("City with ID " + id
+                    + " was modified concurrently twice, version " + current + "; retry the patch");
+        }
+        return new OptimisticLockingFailureException("City with ID " + id + " was modified: version "
+                + current + ", expected " + expected);
+    }
+
+    private static PatchedRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+        City city = new City();
+        city.setId(rs.getLong("id"));
+        city.setName(rs.getString("name"));
+        Coordinates coordinates = new Coordinates(rs.getFloat("x"), rs.getLong("y"));
+        coordinates.setId(rs.getLong("coordinates_id"));
+        city.setCoordinates(coordinates);
+        city.setCreationDate(rs.getObject("creation_date", LocalDateTime.class));
+        city.setArea(rs.getInt("area"));
+        city.setPopulation(rs.getInt("population"));
+        city.setEstablishmentDate(rs.getObject("establishment_date", LocalDateTime.class));
+        city.setCapital(rs.getObject("capital", Boolean.class));
+        city.setMetersAboveSeaLevel(rs.getObject("meters_above_sea_level", Long.class));
+        city.setCarCode(rs.getObject("car_code", Long.class));
+        String climate = rs.getString("climate");
+        city.setClimate(climate != null ? Climate.valueOf(climate) : null);
+        String standardOfLiving = rs.getString("standard_of_living");
+        city.setStandardOfLiving(standardOfLiving != null ? StandardOfLiving.valueOf(standardOfLiving) : null);
+        Long governorId = rs.getObject("governor_id", Long.class);
+        if (governorId != null) {
+            Human governor = new Human(rs.getFloat("governor_height"));
+            governor.setId(governorId);
+            city.setGovernor(governor);
+        }
+        city.setVersion(rs.getLong("version"));
+
+        CityAggregateService.Snapshot previous = new CityAggregateService.Snapshot(rs.getInt("old_area"),
+                rs.getInt("old_population"), rs.getObject("old_meters_above_sea_level", Long.class),
+                rs.getObject("old_car_code", Long.class), rs.getFloat("old_x"), rs.getLong("old_y"));
+        return new PatchedRow(city, previous);
+    }
+}
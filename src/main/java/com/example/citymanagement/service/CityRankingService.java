@@ -0,0 +1,165 @@
+package com.example.citymanagement.service;
+
+import com.example.citymanagement.model.City;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Рейтинги городов по площади и населению, которые хранятся в памяти в упорядоченных деревьях
+ * и обновляются после коммита каждой записи. Первые n городов и место города в рейтинге
+ * определяются без обращения к базе.
+ */
+@Service
+public class CityRankingService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean loaded;
+
+    private final OrderStatisticTree byArea = new OrderStatisticTree();
+    private final OrderStatisticTree byPopulation = new OrderStatisticTree();
+    // Текущие значения по id: по ним находится старый ключ при обновлении и удалении
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    private record Entry(int area, int population) {
+    }
+
+    /**
+     * Место города в рейтинге (начиная с 1) и значение, по которому он ранжирован.
+     */
+    public record Rank(long id, String by, int rank, int value, int total) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        lock.lock();
+        try {
+            byArea.clear();
+            byPopulation.clear();
+            entries.clear();
+            jdbcTemplate.query("SELECT id, area, population FROM cities",
+                    rs -> {
+                        put(rs.getLong(1), new Entry(rs.getInt(2), rs.getInt(3)));
+                    });
+            loaded = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSaved(City city) {
+        long id = city.getId();
+        Entry entry = new Entry(city.getArea(), city.getPopulation());
+        TransactionCallbacks.afterCommit(() -> {
+            lock.lock();
+            try {
+                remove(id);
+                put(id, entry);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    public void onDeleted(Collection<Long> ids) {
+        TransactionCallbacks.afterCommit(() -> {
+            lock.lock();
+            try {
+                ids.forEach(this::remove);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    // Массовая вставка без известных id (импорт через COPY) - перечитываем после коммита
+    public void onBulkChange() {
+        TransactionCallbacks.afterCommit(this::reload);
+    }
+
+    public List<Long> getTopIds(String by, int n) {
+        OrderStatisticTree tree = tree(by);
+        lock.lock();
+        try {
+            ensureLoaded();
+            return tree.top(n);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Rank getRank(String by, long id) {
+        OrderStatisticTree tree = tree(by);
+        lock.lock();
+        try {
+            ensureLoaded();
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                return null;
+            }
+            int value = by.equals("area") ? entry.area() : entry.population();
+            return new Rank(id, by, tree.rank(value, id), value, tree.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сверка с базой по числу городов; при расхождении рейтинги перечитываются.
+     */
+    @Scheduled(fixedDelayString = "${city.aggregates.reconcile-ms:300000}", initialDelayString = "${city.aggregates.reconcile-ms:300000}")
+    public void reconcile() {
+        Long dbCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cities", Long.class);
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        if (dbCount != null && dbCount != size) {
+            System.err.println("City rankings drifted from database (" + size + " vs " + dbCount + " cities), reloading");
+            reload();
+        }
+    }
+
+    private OrderStatisticTree tree(String by) {
+        return switch (by) {
+            case "area" -> byArea;
+            case "population" -> byPopulation;
+            default -> throw new IllegalArgumentException("Ranking is not supported for field: " + by);
+        };
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            reload();
+        }
+    }
+
+    private void put(long id, Entry entry) {
+        entries.put(id, entry);
+        byArea.insert(entry.area(), id);
+        byPopulation.insert(entry.population(), id);
+    }
+
+    private void remove(long id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            byArea.remove(entry.area(), id);
+            byPopulation.remove(entry.population(), id);
+        }
+    }
+}
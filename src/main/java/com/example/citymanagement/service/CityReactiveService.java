@@ -0,0 +1,23 @@
+package com.example.citymanagement.service;
+
+import com.example.citymanagement.dto.CityDto;
+import com.example.citymanagement.repository.CityReactiveRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+public class CityReactiveService {
+
+    @Autowired
+    private CityReactiveRepository cityReactiveRepository;
+
+    public Flux<CityDto> streamCities(long afterId, Long limit) {
+        return cityReactiveRepository.findAfter(afterId, limit != null ? limit : Long.MAX_VALUE);
+    }
+
+    public Mono<CityDto> getCity(long id) {
+        return cityReactiveRepository.findById(id);
+    }
+}
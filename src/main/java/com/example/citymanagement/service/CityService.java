@@ -1,26 +1,48 @@
 package com.example.citymanagement.service;
 
+import com.example.citymanagement.dto.CityBatchOperation;
+import com.example.citymanagement.dto.CityBatchResult;
+import com.example.citymanagement.dto.CityChangeEvent;
+import com.example.citymanagement.dto.CityCursor;
+import com.example.citymanagement.dto.CityCursorPage;
 import com.example.citymanagement.model.City;
-import com.example.citymanagement.model.Climate;
 import com.example.citymanagement.model.Human;
 import com.example.citymanagement.repository.CityRepository;
 import com.example.citymanagement.service.HumanService;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class CityService {
 
+    // Поля, по которым возможна keyset-пагинация (для каждого есть индекс idx_cities_*)
+    private static final Set<String> CURSOR_SORT_FIELDS = Set.of("id", "name", "area", "population", "creationDate");
+
     @Autowired
     private CityRepository cityRepository;
 
@@ -28,12 +50,24 @@ public class CityService {
     private HumanService humanService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private CityChangeBroadcaster cityChangeBroadcaster;
+
+    @Autowired
+    private CityAggregateService cityAggregateService;
 
+    @Autowired
+    private CityRankingService cityRankingService;
+
+    @Autowired
+    private Validator validator;
+
+
+    @Transactional(readOnly = true)
     public List<City> getAllCities() {
         return cityRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Page<City> getCitiesPage(int page, int size, String sortBy, String sortDir) {
         Sort sort = sortDir.equalsIgnoreCase("desc") ?
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
@@ -41,19 +75,184 @@ public class CityService {
         return cityRepository.findAll(pageable);
     }
 
+    @Transactional(readOnly = true)
     public Page<City> searchCities(String name, int page, int size, String sortBy, String sortDir) {
+        String pattern = containsPattern(name);
+
+        // Сортировка по релевантности: сначала названия, наиболее похожие на запрос
+        if (sortBy.equals("relevance")) {
+            return cityRepository.searchByNameRanked(pattern, name.trim(), PageRequest.of(page, size));
+        }
+
         Sort sort = sortDir.equalsIgnoreCase("desc") ?
                 Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        return cityRepository.findByNameContaining(name, pageable);
+        return cityRepository.searchByName(pattern, pageable);
+    }
+
+    // Страница для таблицы списка: только отображаемые атрибуты (City.ListView), без губернатора
+    @Transactional(readOnly = true)
+    public Page<City> getCityListPage(String search, int page, int size, String sortBy, String sortDir) {
+        String pattern = search != null && !search.trim().isEmpty() ? containsPattern(search) : null;
+        if (pattern != null && sortBy.equals("relevance")) {
+            return cityRepository.searchByNameRanked(pattern, search.trim(), PageRequest.of(page, size));
+        }
+        Sort sort = sortDir.equalsIgnoreCase("desc") ?
+                Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+        return cityRepository.findListPage(pattern, PageRequest.of(page, size, sort));
+    }
+
+    // Шаблон для LOWER(name) LIKE: нижний регистр и экранирование спецсимволов LIKE
+    private static String containsPattern(String name) {
+        String escaped = name.trim().toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+
+    @Transactional(readOnly = true)
+    public CityCursorPage getCitiesAfter(String cursor, int size, String sortBy, String sortDir) {
+        Object lastValue = null;
+        Long lastId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            // Курсор фиксирует порядок, в котором он был выдан
+            CityCursor decoded = CityCursor.decode(cursor);
+            sortBy = decoded.sortBy();
+            sortDir = decoded.sortDir();
+            lastId = decoded.lastId();
+            if (CURSOR_SORT_FIELDS.contains(sortBy)) {
+                lastValue = parseSortValue(sortBy, decoded.lastValue());
+            }
+        }
+        if (!CURSOR_SORT_FIELDS.contains(sortBy)) {
+            throw new IllegalArgumentException("Cursor pagination is not supported for field: " + sortBy);
+        }
+        boolean descending = sortDir.equalsIgnoreCase("desc");
+
+        // Запрашиваем на одну строку больше, чтобы узнать, есть ли следующая страница
+        List<City> cities = cityRepository.findPageAfter(sortBy, descending, lastValue, lastId, size + 1);
+        String nextCursor = null;
+        if (cities.size() > size) {
+            cities = cities.subList(0, size);
+            City last = cities.get(size - 1);
+            nextCursor = new CityCursor(sortBy, descending ? "desc" : "asc", last.getId(),
+                    String.valueOf(sortValueOf(sortBy, last))).encode();
+        }
+        return new CityCursorPage(cities, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public long estimateCitiesCount() {
+        return cityRepository.estimateCount();
+    }
+
+    @Transactional(readOnly = true)
+    public long countCities() {
+        return cityRepository.count();
+    }
+
+    /**
+     * Страница списка и ревизия таблицы городов для её ETag (page == null - клиент уже видел эту ревизию).
+     */
+    public record RevisionedPage(String revision, Page<City> page) {
+    }
+
+    /**
+     * Ревизию ведёт триггер в базе (V5__table_revision, V6__table_revision_log), поэтому она общая для всех узлов
+     * и меняется при любой записи, в том числе мимо приложения. Запись добавляет строку в журнал, а не обновляет
+     * общий счётчик, так что параллельные записи не ждут друг друга. Ревизия и страница читаются в одной транзакции с одного сервера,
+     * ревизия - первой: запись между ними даст лишний повторный запрос, но не устаревшую страницу под новой
+     * ревизией. Если notModified принимает ревизию, страница не загружается.
+     */
+    @Transactional(readOnly = true)
+    public RevisionedPage getRevisionedPage(Predicate<String> notModified, Supplier<Page<City>> pageLoader) {
+        String revision = String.valueOf(cityRepository.findCitiesRevision());
+        if (notModified.test(revision)) {
+            return new RevisionedPage(revision, null);
+        }
+        return new RevisionedPage(revision, pageLoader.get());
+    }
+
+    // Журнал ревизий растёт на строку с каждой пишущей командой; сворачивается в базу, чтобы чтение ревизии
+    // не считало длинную таблицу
+    @Scheduled(fixedDelayString = "${city.revision.compact-ms:60000}", initialDelayString = "${city.revision.compact-ms:60000}")
+    public void compactRevisionLog() {
+        cityRepository.compactCitiesRevision();
+    }
+
+    private static Object sortValueOf(String sortBy, City city) {
+        return switch (sortBy) {
+            case "name" -> city.getName();
+            case "area" -> city.getArea();
+            case "population" -> city.getPopulation();
+            case "creationDate" -> city.getCreationDate();
+            default -> city.getId();
+        };
+    }
+
+    private static Object parseSortValue(String sortBy, String value) {
+        return switch (sortBy) {
+            case "name" -> value;
+            case "area", "population" -> Integer.valueOf(value);
+            case "creationDate" -> {
+                try {
+                    yield LocalDateTime.parse(value);
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException("Invalid cursor value: " + value, e);
+                }
+            }
+            default -> Long.valueOf(value);
+        };
+    }
+
+    @Transactional(readOnly = true)
+    public List<City> getNearestCities(double x, double y, int k) {
+        return loadInOrder(cityRepository.findNearestIds(x, y, k));
+    }
+
+    @Transactional(readOnly = true)
+    public List<City> getCitiesWithin(double minX, double minY, double maxX, double maxY, int limit) {
+        return loadInOrder(cityRepository.findIdsWithin(minX, minY, maxX, maxY, limit));
+    }
+
+    // Загружает города одним запросом, сохраняя порядок переданных id
+    private List<City> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, City> byId = cityRepository.findAllWithRelationsByIdIn(ids).stream()
+                .collect(Collectors.toMap(City::getId, Function.identity()));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    // Рейтинги отвечают из памяти (см. CityRankingService), из базы догружаются только сами города
+    @Transactional(readOnly = true)
+    public List<City> getTopCities(String by, int n) {
+        return loadInOrder(cityRankingService.getTopIds(by, n));
     }
 
+    @Transactional(readOnly = true)
+    public CityRankingService.Rank getCityRank(String by, Long id) {
+        return cityRankingService.getRank(by, id);
+    }
+
+    @Transactional(readOnly = true)
     public Optional<City> getCityById(Long id) {
         return cityRepository.findById(id);
     }
 
     public City saveCity(City city) {
+        return saveCity(city, null);
+    }
+
+    /**
+     * Сохраняет город. Для обновления ожидаемая версия берётся из expectedVersion (If-Match),
+     * иначе из тела запроса; без обеих выигрывает последняя запись.
+     * Несовпадение версий - OptimisticLockingFailureException.
+     */
+    public City saveCity(City city, Long expectedVersion) {
         // Обработка губернатора - загружаем полный объект из базы по ID
         if (city.getGovernor() != null && city.getGovernor().getId() != null) {
             Human governor = humanService.getHumanById(city.getGovernor().getId())
@@ -64,54 +263,230 @@ public class CityService {
             city.setGovernor(null);
         }
 
-        City savedCity = cityRepository.save(city);
-        notifyCityUpdate("city_updated");
+        CityChangeEvent.Operation operation = city.getId() == null ?
+                CityChangeEvent.Operation.CREATED : CityChangeEvent.Operation.UPDATED;
+        // Прежние значения нужны для агрегатов и проверки версии; merge в save всё равно читает эту строку
+        City current = city.getId() == null ? null : cityRepository.findById(city.getId()).orElse(null);
+        CityAggregateService.Snapshot previous = null;
+        if (current != null) {
+            prepareUpdate(city, current, expectedVersion);
+            previous = CityAggregateService.Snapshot.of(current);
+        } else {
+            city.setVersion(null);
+        }
+
+        // Обновление сбрасывается сразу, чтобы конфликт версий в UPDATE ... WHERE version = ? пришёл отсюда, а не из коммита
+        City savedCity = current != null ? cityRepository.saveAndFlush(city) : cityRepository.save(city);
+        cityAggregateService.onSaved(previous, CityAggregateService.Snapshot.of(savedCity));
+        cityRankingService.onSaved(savedCity);
+        notifyCityUpdate(operation, List.of(savedCity.getId()), savedCity);
         return savedCity;
     }
 
     public void deleteCity(Long id) {
-        if (!cityRepository.existsById(id)) {
-            throw new RuntimeException("City with ID " + id + " not found");
+        deleteCity(id, null);
+    }
+
+    public void deleteCity(Long id, Long expectedVersion) {
+        City city = cityRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("City with ID " + id + " not found"));
+        if (expectedVersion != null) {
+            checkVersion(city, expectedVersion);
         }
 
-        cityRepository.deleteById(id);
-        notifyCityUpdate("city_updated");
+        cityRepository.delete(city);
+        cityAggregateService.onDeleted(CityAggregateService.Snapshot.of(city));
+        cityRankingService.onDeleted(List.of(id));
+        notifyCityUpdate(CityChangeEvent.Operation.DELETED, List.of(id), null);
     }
 
-    public boolean existsById(Long id) {
-        return cityRepository.existsById(id);
+    // Ожидаемая версия: явная (If-Match), иначе из тела, иначе текущая - последняя запись выигрывает
+    private static void prepareUpdate(City city, City current, Long expectedVersion) {
+        Long version = expectedVersion != null ? expectedVersion
+                : city.getVersion() != null ? city.getVersion() : current.getVersion();
+        checkVersion(current, version);
+        city.setVersion(version);
+        // Координаты без id обновляют существующую строку, а не вставляют новую, оставляя старую без города
+        if (city.getCoordinates() != null && city.getCoordinates().getId() == null) {
+            city.getCoordinates().setId(current.getCoordinates().getId());
+        }
+    }
+
+    private static void checkVersion(City current, Long expectedVersion) {
+        if (!expectedVersion.equals(current.getVersion())) {
+            throw new OptimisticLockingFailureException("City with ID " + current.getId() + " was modified: version "
+                    + current.getVersion() + ", expected " + expectedVersion);
+        }
     }
 
-    // Special operations using database functions
-    public long deleteCitiesByClimate(Climate climate) {
-        Integer deletedCount = cityRepository.deleteCitiesByClimateFunction(climate.toString());
-        notifyCityUpdate("city_updated");
-        return deletedCount != null ? deletedCount : 0;
+    @Transactional(readOnly = true)
+    public List<City> getCitiesByIds(List<Long> ids) {
+        return loadInOrder(ids);
+    }
+
+    /**
+     * Пакет операций в одной транзакции: города и губернаторы загружаются двумя запросами IN (...),
+     * изменения отправляются одним flush (UPDATE/DELETE пакетами JDBC), клиенты получают одно сообщение.
+     * Ошибки отдельных операций (валидация, нет города, версия) возвращаются в результатах и не отменяют остальные.
+     * Повторная операция над тем же городом - 400: все они проверили бы версию по одной несохранённой строке,
+     * и до базы дошла бы только последняя.
+     */
+    public List<CityBatchResult> applyBatch(List<CityBatchOperation> operations) {
+        Set<Long> cityIds = new HashSet<>();
+        Set<Long> governorIds = new HashSet<>();
+        for (CityBatchOperation operation : operations) {
+            if (operation.action() != CityBatchOperation.Action.CREATE && operation.id() != null) {
+                cityIds.add(operation.id());
+            }
+            if (operation.city() != null && operation.city().getGovernor() != null
+                    && operation.city().getGovernor().getId() != null) {
+                governorIds.add(operation.city().getGovernor().getId());
+            }
+        }
+        Map<Long, City> currentById = cityIds.isEmpty() ? new HashMap<>() :
+                cityRepository.findAllWithRelationsByIdIn(cityIds).stream()
+                        .collect(Collectors.toMap(City::getId, Function.identity()));
+        Map<Long, Human> governors = humanService.getHumansByIds(governorIds);
+
+        CityBatchResult[] results = new CityBatchResult[operations.size()];
+        List<BatchWrite> writes = new ArrayList<>();
+        Set<Long> seenIds = new HashSet<>();
+        for (int i = 0; i < operations.size(); i++) {
+            CityBatchOperation operation = operations.get(i);
+            if (operation.action() == null) {
+                results[i] = CityBatchResult.failed(i, operation, 400, "Action is required");
+                continue;
+            }
+            if (operation.action() != CityBatchOperation.Action.CREATE && operation.id() != null
+                    && !seenIds.add(operation.id())) {
+                results[i] = CityBatchResult.failed(i, operation, 400,
+                        "City with ID " + operation.id() + " appears more than once in the batch");
+                continue;
+            }
+            City current = operation.id() != null ? currentById.get(operation.id()) : null;
+            if (operation.action() != CityBatchOperation.Action.CREATE && current == null) {
+                results[i] = CityBatchResult.failed(i, operation, 404, "City not found with id: " + operation.id());
+                continue;
+            }
+
+            if (operation.action() == CityBatchOperation.Action.DELETE) {
+                if (operation.version() != null && !operation.version().equals(current.getVersion())) {
+                    results[i] = CityBatchResult.failed(i, operation, 412, "City with ID " + current.getId()
+                            + " was modified: version " + current.getVersion() + ", expected " + operation.version());
+                    continue;
+                }
+                CityAggregateService.Snapshot previous = CityAggregateService.Snapshot.of(current);
+                cityRepository.delete(current);
+                currentById.remove(operation.id());
+                writes.add(new BatchWrite(i, operation, previous, null));
+                continue;
+            }
+
+            City city = operation.city();
+            String violations = city != null ? validate(city) : "City is required";
+            if (violations != null) {
+                results[i] = CityBatchResult.failed(i, operation, 400, violations);
+                continue;
+            }
+            Long governorId = city.getGovernor() != null ? city.getGovernor().getId() : null;
+            city.setGovernor(governorId != null ? governors.get(governorId) : null);
+
+            CityAggregateService.Snapshot previous = null;
+            if (operation.action() == CityBatchOperation.Action.CREATE) {
+                city.setId(null);
+                city.setVersion(null);
+                if (city.getCreationDate() == null) {
+                    city.setCreationDate(LocalDateTime.now());
+                }
+            } else {
+                try {
+                    city.setId(current.getId());
+                    previous = CityAggregateService.Snapshot.of(current);
+                    prepareUpdate(city, current, operation.version());
+                } catch (OptimisticLockingFailureException e) {
+                    results[i] = CityBatchResult.failed(i, operation, 412, e.getMessage());
+                    continue;
+                }
+            }
+            writes.add(new BatchWrite(i, operation, previous, cityRepository.save(city)));
+        }
+
+        // Все INSERT/UPDATE/DELETE пакета; здесь же назначаются id новых городов
+        cityRepository.flush();
+
+        List<CityChangeBroadcaster.Change> changes = new ArrayList<>(writes.size());
+        for (BatchWrite write : writes) {
+            CityBatchOperation operation = write.operation();
+            if (write.saved() == null) {
+                cityAggregateService.onDeleted(write.previous());
+                cityRankingService.onDeleted(List.of(operation.id()));
+                changes.add(new CityChangeBroadcaster.Change(CityChangeEvent.Operation.DELETED, List.of(operation.id()), null));
+                results[write.index()] = new CityBatchResult(write.index(), operation.action(), operation.id(), 204, null, null);
+                continue;
+            }
+            City saved = write.saved();
+            boolean created = operation.action() == CityBatchOperation.Action.CREATE;
+            cityAggregateService.onSaved(write.previous(), CityAggregateService.Snapshot.of(saved));
+            cityRankingService.onSaved(saved);
+            changes.add(new CityChangeBroadcaster.Change(created ? CityChangeEvent.Operation.CREATED
+                    : CityChangeEvent.Operation.UPDATED, List.of(saved.getId()), saved));
+            results[write.index()] = new CityBatchResult(write.index(), operation.action(), saved.getId(),
+                    created ? 201 : 200, null, saved);
+        }
+        cityChangeBroadcaster.publishAll(changes);
+        return List.of(results);
+    }
+
+    // saved == null - удаление
+    private record BatchWrite(int index, CityBatchOperation operation, CityAggregateService.Snapshot previous, City saved) {
+    }
+
+    private String validate(City city) {
+        Set<ConstraintViolation<?>> violations = new HashSet<>(validator.validate(city));
+        if (city.getCoordinates() != null) {
+            violations.addAll(validator.validate(city.getCoordinates()));
+        }
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    @Transactional(readOnly = true)
+    public boolean existsById(Long id) {
+        return cityRepository.existsById(id);
     }
 
+    // Специальные операции отвечают из агрегатов в памяти (см. CityAggregateService)
+    @Transactional(readOnly = true)
     public Double getAverageMetersAboveSeaLevel() {
-        return cityRepository.getAverageMetersAboveSeaLevel();
+        return cityAggregateService.getAverageMetersAboveSeaLevel();
     }
 
+    @Transactional(readOnly = true)
     public List<Long> getUniqueCarCodes() {
-        return cityRepository.getUniqueCarCodes();
+        return cityAggregateService.getUniqueCarCodes();
     }
 
+    @Transactional(readOnly = true)
     public double calculateDistanceToCityWithMaxArea() {
-        Double distance = cityRepository.calculateDistanceToMaxAreaCity();
-        return distance != null ? distance : 0.0;
+        return cityAggregateService.getDistanceToCityWithMaxArea();
     }
 
+    @Transactional(readOnly = true)
     public double calculateDistanceFromOriginToCityWithMaxPopulation() {
-        Double distance = cityRepository.calculateDistanceToMaxPopulationCity();
-        return distance != null ? distance : 0.0;
+        return cityAggregateService.getDistanceToCityWithMaxPopulation();
     }
 
 
-    private void notifyCityUpdate(String message) {
-        messagingTemplate.convertAndSend("/topic/city-updates", message);
+    private void notifyCityUpdate(CityChangeEvent.Operation operation, List<Long> ids, City city) {
+        cityChangeBroadcaster.publish(operation, ids, city);
     }
 
+    @Transactional(readOnly = true)
     public List<Human> getAllHumans() {
         return humanService.getAllHumans();
     }
@@ -0,0 +1,93 @@
+package com.example.citymanagement.service;
+
+import com.example.citymanagement.config.EntityCacheProperties;
+import com.example.citymanagement.model.City;
+import com.example.citymanagement.model.Coordinates;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import org.eclipse.persistence.descriptors.ClassDescriptor;
+import org.eclipse.persistence.descriptors.invalidation.TimeToLiveCacheInvalidationPolicy;
+import org.eclipse.persistence.jpa.JpaEntityManagerFactory;
+import org.eclipse.persistence.sessions.server.ServerSession;
+import org.eclipse.persistence.tools.profiler.PerformanceMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Время жизни объектов в разделяемом кэше EclipseLink, его сброс и статистика попаданий/промахов.
+ */
+@Service
+public class EntityCacheService {
+
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private EntityCacheProperties cacheProperties;
+
+    @PostConstruct
+    public void configure() {
+        ServerSession session = serverSession();
+        cacheProperties.getEntities().forEach((entity, cache) -> {
+            ClassDescriptor descriptor = session.getDescriptorForAlias(entity);
+            if (descriptor != null && cache.getExpiryMs() > 0) {
+                descriptor.setCacheInvalidationPolicy(new TimeToLiveCacheInvalidationPolicy(cache.getExpiryMs()));
+            }
+        });
+        if (session.getProfiler() instanceof PerformanceMonitor monitor) {
+            // Статистику отдаём через /api/cache/stats, периодический вывод в лог не нужен
+            monitor.setDumpTime(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Сбрасывает закэшированные города после изменений в обход JPA (например, функциями PostgreSQL).
+     * Сброс выполняется после коммита, чтобы параллельный запрос не вернул в кэш удалённые строки.
+     */
+    public void evictCities() {
+        TransactionCallbacks.afterCommit(() -> entityManagerFactory.getCache().evict(City.class));
+    }
+
+    // Точечный сброс одного города и его координат после обновления в обход JPA
+    public void evictCity(Long cityId, Long coordinatesId) {
+        TransactionCallbacks.afterCommit(() -> {
+            entityManagerFactory.getCache().evict(City.class, cityId);
+            entityManagerFactory.getCache().evict(Coordinates.class, coordinatesId);
+        });
+    }
+
+    public Map<String, Object> getStatistics() {
+        ServerSession session = serverSession();
+        Map<String, Object> stats = new HashMap<>();
+
+        Map<String, Object> sizes = new TreeMap<>();
+        cacheProperties.getEntities().keySet().forEach(entity -> {
+            ClassDescriptor descriptor = session.getDescriptorForAlias(entity);
+            if (descriptor != null) {
+                sizes.put(entity, session.getIdentityMapAccessorInstance().getIdentityMap(descriptor).getSize());
+            }
+        });
+        stats.put("cachedObjects", sizes);
+
+        if (session.getProfiler() instanceof PerformanceMonitor monitor) {
+            // Счётчики вида Counter:CacheHits:City:... по каждому запросу
+            Map<String, Object> counters = new TreeMap<>();
+            monitor.getOperationTimings().forEach((name, value) -> {
+                if (name.startsWith("Counter:CacheHits") || name.startsWith("Counter:CacheMisses")) {
+                    counters.put(name, value);
+                }
+            });
+            stats.put("counters", counters);
+        }
+        return stats;
+    }
+
+    private ServerSession serverSession() {
+        return entityManagerFactory.unwrap(JpaEntityManagerFactory.class).getServerSession();
+    }
+}
@@ -6,8 +6,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -16,13 +20,25 @@ public class HumanService {
     @Autowired
     private HumanRepository humanRepository;
     
+    @Transactional(readOnly = true)
     public List<Human> getAllHumans() {
         return humanRepository.findAll();
     }
     
+    @Transactional(readOnly = true)
     public Optional<Human> getHumanById(Long id) {
         return humanRepository.findById(id);
     }
+
+    // Один запрос WHERE id IN (...) вместо поиска по одному
+    @Transactional(readOnly = true)
+    public Map<Long, Human> getHumansByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return humanRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Human::getId, Function.identity()));
+    }
     
     public Human saveHuman(Human human) {
         return humanRepository.save(human);
@@ -0,0 +1,155 @@
+package com.example.citymanagement.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Декартово дерево (treap) с размерами поддеревьев, упорядоченное по (value по убыванию, id по возрастанию).
+ * Вставка, удаление и поиск места в рейтинге - O(log n), первые n элементов - O(log n + n).
+ * Не потокобезопасно: синхронизация на стороне вызывающего кода.
+ */
+final class OrderStatisticTree {
+
+    private static final class Node {
+        final int value;
+        final long id;
+        final int priority;
+        Node left;
+        Node right;
+        int size = 1;
+
+        Node(int value, long id, int priority) {
+            this.value = value;
+            this.id = id;
+            this.priority = priority;
+        }
+    }
+
+    private Node root;
+
+    int size() {
+        return size(root);
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    void insert(int value, long id) {
+        Node[] parts = split(root, value, id);
+        Node node = new Node(value, id, ThreadLocalRandom.current().nextInt());
+        root = merge(merge(parts[0], node), parts[1]);
+    }
+
+    void remove(int value, long id) {
+        root = remove(root, value, id);
+    }
+
+    // Место в рейтинге, начиная с 1; -1, если такого ключа нет
+    int rank(int value, long id) {
+        int before = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(value, id, node);
+            if (cmp == 0) {
+                return before + size(node.left) + 1;
+            }
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return -1;
+    }
+
+    // id первых n элементов в порядке рейтинга
+    List<Long> top(int n) {
+        List<Long> ids = new ArrayList<>(Math.min(n, size()));
+        Deque<Node> stack = new ArrayDeque<>();
+        Node node = root;
+        while ((node != null || !stack.isEmpty()) && ids.size() < n) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            ids.add(node.id);
+            node = node.right;
+        }
+        return ids;
+    }
+
+    private static Node remove(Node node, int value, long id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(value, id, node);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = remove(node.left, value, id);
+        } else {
+            node.right = remove(node.right, value, id);
+        }
+        update(node);
+        return node;
+    }
+
+    // [ключи меньше (value, id), ключи не меньше (value, id)]
+    private static Node[] split(Node node, int value, long id) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(value, id, node) > 0) {
+            Node[] parts = split(node.right, value, id);
+            node.right = parts[0];
+            update(node);
+            parts[0] = node;
+            return parts;
+        }
+        Node[] parts = split(node.left, value, id);
+        node.left = parts[1];
+        update(node);
+        parts[1] = node;
+        return parts;
+    }
+
+    // Все ключи left меньше всех ключей right
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static int compare(int value, long id, Node node) {
+        if (value != node.value) {
+            return value > node.value ? -1 : 1;
+        }
+        return Long.compare(id, node.id);
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+}
@@ -0,0 +1,85 @@
+-- Special operations. Repeatable: re-applied only when this file changes
+
+-- Climate deletes go through BulkDeleteJobService; drop the old unsynchronised function
+DROP FUNCTION IF EXISTS delete_cities_by_climate(VARCHAR);
+
+-- Average meters above sea level function
+CREATE OR REPLACE FUNCTION get_average_meters_above_sea_level()
+RETURNS DECIMAL AS $$
+DECLARE
+    avg_meters DECIMAL;
+BEGIN
+    SELECT AVG(meters_above_sea_level) INTO avg_meters
+    FROM cities
+    WHERE meters_above_sea_level IS NOT NULL;
+    RETURN COALESCE(avg_meters, 0);
+END;
+$$ LANGUAGE plpgsql;
+
+-- Unique car codes function
+CREATE OR REPLACE FUNCTION get_unique_car_codes()
+RETURNS TABLE(car_code BIGINT) AS $$
+BEGIN
+    RETURN QUERY
+    SELECT DISTINCT c.car_code
+    FROM cities c
+    WHERE c.car_code IS NOT NULL
+    ORDER BY c.car_code;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Distance to max area city function
+CREATE OR REPLACE FUNCTION calculate_distance_to_max_area_city()
+RETURNS DECIMAL AS $$
+DECLARE
+    max_area_city RECORD;
+    distance DECIMAL;
+BEGIN
+    SELECT c.id, c.coordinates_id, c.meters_above_sea_level, co.x, co.y
+    INTO max_area_city
+    FROM cities c
+    JOIN coordinates co ON c.coordinates_id = co.id
+    WHERE c.area = (SELECT MAX(area) FROM cities)
+    LIMIT 1;
+
+    IF max_area_city.id IS NOT NULL THEN
+        distance := SQRT(
+            POWER(max_area_city.x - 0, 2) +
+            POWER(max_area_city.y - 0, 2) +
+            POWER(COALESCE(max_area_city.meters_above_sea_level, 0) - 0, 2)
+        );
+    ELSE
+        distance := 0;
+    END IF;
+
+    RETURN distance;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Distance to max population city function
+CREATE OR REPLACE FUNCTION calculate_distance_to_max_population_city()
+RETURNS DECIMAL AS $$
+DECLARE
+    max_pop_city RECORD;
+    distance DECIMAL;
+BEGIN
+    SELECT c.id, c.coordinates_id, c.meters_above_sea_level, co.x, co.y
+    INTO max_pop_city
+    FROM cities c
+    JOIN coordinates co ON c.coordinates_id = co.id
+    WHERE c.population = (SELECT MAX(population) FROM cities)
+    LIMIT 1;
+
+    IF max_pop_city.id IS NOT NULL THEN
+        distance := SQRT(
+            POWER(max_pop_city.x - 0, 2) +
+            POWER(max_pop_city.y - 0, 2) +
+            POWER(COALESCE(max_pop_city.meters_above_sea_level, 0) - 0, 2)
+        );
+    ELSE
+        distance := 0;
+    END IF;
+
+    RETURN distance;
+END;
+$$ LANGUAGE plpgsql;
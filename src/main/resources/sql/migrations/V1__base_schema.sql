@@ -36,3 +36,4 @@ CREATE INDEX IF NOT EXISTS idx_cities_climate ON cities(climate);
 CREATE INDEX IF NOT EXISTS idx_cities_area ON cities(area);
 CREATE INDEX IF NOT EXISTS idx_cities_population ON cities(population);
 CREATE INDEX IF NOT EXISTS idx_cities_creation_date ON cities(creation_date);
+CREATE INDEX IF NOT EXISTS idx_cities_coordinates_id ON cities(coordinates_id);
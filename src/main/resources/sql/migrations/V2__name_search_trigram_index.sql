@@ -0,0 +1,12 @@
+-- Trigram GIN index for case-insensitive substring search (LOWER(name) LIKE '%...%').
+-- Without the pg_trgm extension (or the right to create it) search still works, only with a sequential scan.
+-- SQLSTATE MDFER makes SchemaMigrator leave this migration unrecorded and retry it at the next start
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+    CREATE INDEX IF NOT EXISTS idx_cities_name_trgm ON cities USING gin (LOWER(name) gin_trgm_ops);
+EXCEPTION WHEN insufficient_privilege OR undefined_file OR feature_not_supported THEN
+    RAISE EXCEPTION 'pg_trgm is not available, idx_cities_name_trgm is not created: %', SQLERRM
+        USING ERRCODE = 'MDFER';
+END
+$$;
@@ -0,0 +1,2 @@
+-- Spatial index for nearest-neighbour (<->) and bounding-box (<@) queries over coordinates
+CREATE INDEX IF NOT EXISTS idx_coordinates_point ON coordinates USING gist (point(x, y));
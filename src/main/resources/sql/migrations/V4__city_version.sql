@@ -0,0 +1,2 @@
+-- Optimistic locking column (@Version in City)
+ALTER TABLE cities ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 1;
@@ -0,0 +1,30 @@
+-- Revision of the cities listing (weak ETag of GET /api/cities). Every statement changing cities, coordinates
+-- or humans bumps it inside the writing transaction, so all application nodes and read replicas see the new
+-- revision exactly together with the change, including writes made outside the application.
+-- The counter row is locked until the writing transaction commits: concurrent writers queue on it.
+CREATE TABLE IF NOT EXISTS table_revision (
+    table_name VARCHAR(64) PRIMARY KEY,
+    revision BIGINT NOT NULL
+);
+
+INSERT INTO table_revision (table_name, revision) VALUES ('cities', 1) ON CONFLICT (table_name) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION bump_cities_revision()
+RETURNS TRIGGER AS $$
+BEGIN
+    UPDATE table_revision SET revision = revision + 1 WHERE table_name = 'cities';
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS cities_revision ON cities;
+CREATE TRIGGER cities_revision AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON cities
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_cities_revision();
+
+DROP TRIGGER IF EXISTS coordinates_revision ON coordinates;
+CREATE TRIGGER coordinates_revision AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON coordinates
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_cities_revision();
+
+DROP TRIGGER IF EXISTS humans_revision ON humans;
+CREATE TRIGGER humans_revision AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON humans
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_cities_revision();
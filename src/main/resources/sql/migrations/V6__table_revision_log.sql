@@ -0,0 +1,35 @@
+-- Revision of the cities listing without a shared counter row. The statement triggers from V5 now append a row
+-- to cities_revision_log instead of updating table_revision: inserts take no lock other writers wait for,
+-- so concurrent writers neither queue nor deadlock on the revision. The revision is the compacted base in
+-- table_revision plus the number of log rows, read in one statement (one snapshot) and still transactional:
+-- a write becomes visible together with its log row.
+CREATE TABLE IF NOT EXISTS cities_revision_log (
+    id BIGSERIAL PRIMARY KEY
+);
+
+CREATE OR REPLACE FUNCTION bump_cities_revision()
+RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO cities_revision_log DEFAULT VALUES;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Folds committed log rows into table_revision; the sum (and so the ETag) does not change.
+-- Uncommitted rows are invisible to the DELETE and stay for the next run. One compaction at a time across nodes
+CREATE OR REPLACE FUNCTION compact_cities_revision()
+RETURNS INTEGER AS $$
+DECLARE
+    moved INTEGER;
+BEGIN
+    IF NOT pg_try_advisory_xact_lock(hashtext('cities_revision_log')) THEN
+        RETURN 0;
+    END IF;
+    WITH deleted AS (DELETE FROM cities_revision_log RETURNING id)
+    SELECT count(*) INTO moved FROM deleted;
+    IF moved > 0 THEN
+        UPDATE table_revision SET revision = revision + moved WHERE table_name = 'cities';
+    END IF;
+    RETURN moved;
+END;
+$$ LANGUAGE plpgsql;
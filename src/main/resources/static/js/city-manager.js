@@ -8,6 +8,10 @@ class CityManager {
         this.searchTerm = '';
         this.cityToDelete = null;
         this.isOwnUpdate = false;
+        this.pageData = null;
+        this.lastRevision = 0;
+        this.editingEtag = null;
+        this.editingCity = null;
         this.connectWebSocket();
         this.init();
     }
@@ -24,11 +28,13 @@ class CityManager {
 
         this.currentPage = page;
 
+        // Таблице нужны только её столбцы; карточка и форма редактирования загружают город целиком
         const params = new URLSearchParams({
             page: page,
             size: this.pageSize,
             sortBy: this.sortBy,
-            sortDir: this.sortDir
+            sortDir: this.sortDir,
+            view: 'summary'
         });
 
         if (this.searchTerm) {
@@ -40,6 +46,7 @@ class CityManager {
             if (!response.ok) throw new Error('Network error');
 
             const data = await response.json();
+            this.pageData = data;
 
             if (updateOnlyTable) {
                 this.renderCityTableOnly(data);
@@ -627,26 +634,38 @@ class CityManager {
 
         const id = document.getElementById('cityId').value;
         const url = id ? `${this.baseUrl}/${id}` : this.baseUrl;
-        const method = id ? 'PUT' : 'POST';
+        // При редактировании отправляются только изменённые поля
+        const patch = id && this.editingCity ? this.buildMergePatch(this.editingCity, formData) : null;
+        const method = id ? (patch ? 'PATCH' : 'PUT') : 'POST';
+
+        if (patch && Object.keys(patch).length === 0) {
+            bootstrap.Modal.getInstance(document.getElementById('cityModal')).hide();
+            this.showOperationResult('No changes to save', true);
+            return;
+        }
 
         try {
+            const headers = { 'Content-Type': patch ? 'application/merge-patch+json' : 'application/json' };
+            if (id && this.editingEtag) headers['If-Match'] = this.editingEtag;
+
             const response = await fetch(url, {
                 method: method,
-                headers: {
-                    'Content-Type': 'application/json',
-                },
-                body: JSON.stringify(formData)
+                headers: headers,
+                body: JSON.stringify(patch || formData)
             });
 
             const result = await response.json();
 
-            if (response.ok) {
+            if (response.status === 412) {
+                this.showOperationResult('City was changed by someone else. Reopen it to see the current data.', false);
+            } else if (response.ok) {
+                this.editingEtag = null;
+                this.editingCity = null;
                 bootstrap.Modal.getInstance(document.getElementById('cityModal')).hide();
                 this.showOperationResult('City ' + (id ? 'updated' : 'created') + ' successfully!', true);
 
                 // Обновляем только таблицу
                 await this.loadCities(0, true);
-                this.notifyUpdate();
             } else {
                 // Обработка ошибок валидации
                 if (result.errors) {
@@ -660,6 +679,27 @@ class CityManager {
         }
     }
 
+    // JSON Merge Patch (RFC 7386) по полям формы: изменённые значения, очищенные необязательные поля - null
+    buildMergePatch(original, formData) {
+        const fields = ['name', 'area', 'population', 'capital', 'metersAboveSeaLevel', 'carCode',
+            'climate', 'standardOfLiving', 'establishmentDate'];
+        const patch = {};
+        for (const field of fields) {
+            const value = formData[field] ?? null;
+            if (value !== (original[field] ?? null)) patch[field] = value;
+        }
+
+        const coordinates = {};
+        if (formData.coordinates.x !== original.coordinates.x) coordinates.x = formData.coordinates.x;
+        if (formData.coordinates.y !== original.coordinates.y) coordinates.y = formData.coordinates.y;
+        if (Object.keys(coordinates).length > 0) patch.coordinates = coordinates;
+
+        const governorId = formData.governor ? formData.governor.id : null;
+        const originalGovernorId = original.governor ? original.governor.id : null;
+        if (governorId !== originalGovernorId) patch.governor = governorId !== null ? { id: governorId } : null;
+        return patch;
+    }
+
     // Показать модальное окно создания губернатора
     showCreateGovernorModal() {
         console.log('showCreateGovernorModal called');
@@ -781,6 +821,9 @@ class CityManager {
             if (!response.ok) throw new Error('City not found');
 
             const cityData = await response.json();
+            // Версия, которую видит пользователь: сохранение поверх чужих изменений вернёт 412
+            this.editingEtag = response.headers.get('ETag');
+            this.editingCity = cityData;
             this.showCityForm(cityData);
         } catch (error) {
             this.showOperationResult('Error loading city: ' + error.message, false);
@@ -811,7 +854,6 @@ class CityManager {
 
                 // Обновляем только таблицу
                 await this.loadCities(0, true);
-                this.notifyUpdate();
             } else {
                 const result = await response.json();
                 this.showOperationResult(result.error || 'Error deleting city', false);
@@ -841,16 +883,38 @@ class CityManager {
 
             this.showOperationResult(result.message, result.success);
             if (result.success) {
-                // Обновляем только таблицу
-                setTimeout(async () => {
-                    await this.loadCities(0, true);
-                }, 1000);
+                // Удаление идёт в фоне; таблица обновится по событиям /topic/city-updates
+                this.watchJob(result.jobId);
             }
         } catch (error) {
             this.showOperationResult('Error: ' + error.message, false);
         }
     }
 
+    // Показывает прогресс фонового задания до его завершения
+    watchJob(jobId) {
+        const showStatus = (job) => {
+            const finished = ['COMPLETED', 'CANCELLED', 'FAILED'].includes(job.state);
+            const progress = `Deleted ${job.deleted} of ${job.total} cities`;
+            const message = finished ? `Job ${job.state.toLowerCase()}: ${progress}` + (job.error ? ` (${job.error})` : '') : progress;
+            this.showOperationResult(message, job.state !== 'FAILED');
+            return finished;
+        };
+
+        if (!this.stompClient || !this.stompClient.connected) return;
+        const subscription = this.stompClient.subscribe(`/topic/jobs/${jobId}`, (message) => {
+            if (showStatus(JSON.parse(message.body))) subscription.unsubscribe();
+        });
+
+        // Задание могло завершиться до подписки
+        fetch(`/api/jobs/${jobId}`)
+            .then(response => response.ok ? response.json() : null)
+            .then(job => {
+                if (job && showStatus(job)) subscription.unsubscribe();
+            })
+            .catch(() => {});
+    }
+
     async getAverageMeters() {
         try {
             const response = await fetch(`${this.baseUrl}/special/average-meters`);
@@ -929,10 +993,8 @@ class CityManager {
                         const data = JSON.parse(message.body);
                         console.log('WebSocket message received:', data);
 
-                        if (data.type === 'city_updated') {
-                            // Обновляем только таблицу, не всю страницу
-                            await this.loadCities(0, true);
-                            this.showOperationResult('City data was updated by another user', true);
+                        if (data.type === 'city_changes') {
+                            await this.applyCityChanges(data);
                         }
                     } catch (e) {
                         console.error('Error processing WebSocket message:', e);
@@ -950,17 +1012,62 @@ class CityManager {
         }
     }
 
-    notifyUpdate() {
-        if (this.stompClient && this.stompClient.connected) {
-            try {
-                this.stompClient.send("/app/city-update", {}, JSON.stringify({
-                    type: 'city_updated',
-                    timestamp: new Date().toISOString()
-                }));
-            } catch (error) {
-                console.error('Error sending WebSocket message:', error);
+    // Применение пачки изменений к текущей странице без повторного запроса, когда это возможно
+    async applyCityChanges(batch) {
+        if (batch.toRevision === this.lastRevision) return;
+        // Разрыв в номерах означает пропущенные события или перезапуск сервера
+        const missedEvents = this.lastRevision !== 0 && batch.fromRevision !== this.lastRevision + 1;
+        this.lastRevision = batch.toRevision;
+
+        const data = this.pageData;
+        if (!data || !data.cities || missedEvents) {
+            // Состояние страницы неизвестно, перезагружаем
+            await this.loadCities(this.currentPage, true);
+            return;
+        }
+
+        // Без поиска и при сортировке по id изменение города не двигает строки других страниц
+        const stableOrder = this.sortBy === 'id' && !this.searchTerm;
+        let reload = false;
+        let patched = false;
+        for (const event of batch.events) {
+            switch (event.operation) {
+                case 'UPDATED': {
+                    const current = data.cities.find(city => event.ids.includes(city.id));
+                    if (!current) {
+                        // Город с другой страницы мог переместиться на эту или с соседней через неё
+                        if (!stableOrder) reload = true;
+                    } else if (event.city && (stableOrder || this.keepsPosition(current, event.city))) {
+                        data.cities = data.cities.map(city => city.id === event.city.id ? event.city : city);
+                        patched = true;
+                    } else {
+                        // Изменилось поле сортировки или совпадение с поиском
+                        reload = true;
+                    }
+                    break;
+                }
+                case 'CREATED':
+                case 'BULK_CREATED':
+                case 'DELETED':
+                case 'BULK_DELETED':
+                    // При offset-пагинации вставка или удаление на любой странице сдвигает последующие
+                    // и меняет общее число записей
+                    reload = true;
+                    break;
             }
         }
+
+        if (reload) {
+            await this.loadCities(this.currentPage, true);
+        } else if (patched) {
+            this.renderCityTableOnly(data);
+        }
+    }
+
+    // Строка остаётся на месте, если не изменились значение сортировки и имя (по нему идёт поиск)
+    keepsPosition(previous, updated) {
+        return previous.name === updated.name
+            && JSON.stringify(previous[this.sortBy]) === JSON.stringify(updated[this.sortBy]);
     }
 
     // Вспомогательные методы
@@ -0,0 +1,74 @@
+package com.example.citymanagement.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Оценка отставания реплики по проверкам позиции WAL основного сервера, без базы.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final long NOW = 100_000;
+
+    // Проверки раз в секунду: 96 с - позиция 100, ..., 100 с (только что) - позиция 500
+    private static Deque<ReplicaRoutingDataSource.WalSample> samples() {
+        return new ArrayDeque<>(List.of(
+                new ReplicaRoutingDataSource.WalSample(96_000, 100),
+                new ReplicaRoutingDataSource.WalSample(97_000, 200),
+                new ReplicaRoutingDataSource.WalSample(98_000, 300),
+                new ReplicaRoutingDataSource.WalSample(99_000, 400),
+                new ReplicaRoutingDataSource.WalSample(NOW - 5, 500)));
+    }
+
+    @Test
+    void replicaAtNewestSampleDoesNotLag() {
+        assertEquals(0, ReplicaRoutingDataSource.lagBehindPrimary(samples(), 500, NOW));
+        assertEquals(0, ReplicaRoutingDataSource.lagBehindPrimary(samples(), 650, NOW));
+    }
+
+    @Test
+    void replicaJustShortOfNewestSampleLagsByItsAgeOnly() {
+        // Под постоянной записью реплика почти всегда чуть позади последней проверки
+        assertEquals(5, ReplicaRoutingDataSource.lagBehindPrimary(samples(), 499, NOW));
+        assertEquals(5, ReplicaRoutingDataSource.lagBehindPrimary(samples(), 400, NOW));
+    }
+
+    @Test
+    void lagIsAgeOfOldestUnreplayedSample() {
+        assertEquals(2_000, ReplicaRoutingDataSource.lagBehindPrimary(samples(), 250, NOW));
+        assertEquals(3_000, ReplicaRoutingDataSource.lagBehindPrimary(samples(), 100, NOW));
+    }
+
+    @Test
+    void replicaOlderThanWindowLagsAtLeastWholeWindow() {
+        assertEquals(4_000, ReplicaRoutingDataSource.lagBehindPrimary(samples(), 50, NOW));
+    }
+
+    @Test
+    void noSamplesMeansNoKnownLag() {
+        assertEquals(0, ReplicaRoutingDataSource.lagBehindPrimary(new ArrayDeque<>(), 50, NOW));
+    }
+
+    @Test
+    void lagCheckIntervalMustBeShorterThanMaxLag() {
+        // Пулы Hikari подключаются только при первом getConnection
+        HikariDataSource primary = new HikariDataSource();
+        Map<String, HikariDataSource> replicas = Map.of("replica-0", new HikariDataSource());
+        ReadYourWritesGuard guard = new ReadYourWritesGuard(0);
+
+        assertThrows(IllegalStateException.class,
+                () -> new ReplicaRoutingDataSource(primary, replicas, guard, 5000, 5000));
+        assertDoesNotThrow(() -> new ReplicaRoutingDataSource(primary, replicas, guard, 5000, 1000));
+        // Без реплик отставание не проверяется
+        assertDoesNotThrow(() -> new ReplicaRoutingDataSource(primary, Map.of(), guard, 5000, 5000));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.citymanagement.repository;
+
+import com.example.citymanagement.dto.CityCursor;
+import com.example.citymanagement.dto.CityCursorPage;
+import com.example.citymanagement.model.City;
+import com.example.citymanagement.model.Climate;
+import com.example.citymanagement.model.Coordinates;
+import com.example.citymanagement.model.Human;
+import com.example.citymanagement.model.StandardOfLiving;
+import com.example.citymanagement.service.CityService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.eclipse.persistence.jpa.JpaEntityManagerFactory;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.eclipse.persistence.sessions.SessionEventListener;
+import org.eclipse.persistence.sessions.server.ServerSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Число SQL-запросов на страницу списка: координаты и губернатор загружаются тем же запросом, что и страница.
+ * Регрессия к N+1 даёт по лишнему SELECT на строку. Нужна локальная PostgreSQL из профиля dev
+ * (переменные DB_DEV_* или файл .env): gradle test -PdatabaseTests. Данные теста откатываются.
+ */
+@Tag("database")
+@SpringBootTest(properties = {
+        "spring.profiles.active=dev",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.eclipselink.logging.level=WARNING"
+})
+@Transactional
+class CityQueryStatementCountTest {
+
+    private static final String NAME = "StatementCount";
+    private static final int CITIES = 6;
+    private static final int PAGE_SIZE = 5;
+
+    @Autowired
+    private CityService cityService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private SessionEventListener counter;
+    private long firstId;
+
+    @BeforeEach
+    void createCities() {
+        firstId = Long.MAX_VALUE;
+        for (int i = 0; i < CITIES; i++) {
+            City city = new City();
+            city.setName(NAME + " " + i);
+            city.setCoordinates(new Coordinates(i, i));
+            city.setCreationDate(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i));
+            city.setArea(100 + i);
+            city.setPopulation(1000 + i);
+            city.setEstablishmentDate(LocalDateTime.of(1900, 1, 1, 0, 0));
+            city.setCapital(false);
+            city.setMetersAboveSeaLevel(10L);
+            city.setCarCode(1L + i);
+            city.setClimate(Climate.values()[i % Climate.values().length]);
+            city.setStandardOfLiving(StandardOfLiving.values()[i % StandardOfLiving.values().length]);
+            city.setGovernor(new Human(1.8f));
+            entityManager.persist(city);
+            entityManager.flush();
+            firstId = Math.min(firstId, city.getId());
+        }
+        // Строки должны читаться из базы: разделяемый кэш и контекст скрыли бы запросы по связям
+        entityManager.clear();
+        entityManagerFactory.getCache().evictAll();
+
+        // Считаются только запросы потока теста: фоновые задачи приложения работают параллельно
+        Thread testThread = Thread.currentThread();
+        counter = new SessionEventAdapter() {
+            @Override
+            public void postExecuteCall(SessionEvent event) {
+                if (Thread.currentThread() == testThread) {
+                    statements.incrementAndGet();
+                }
+            }
+        };
+        serverSession().getEventManager().addListener(counter);
+    }
+
+    @AfterEach
+    void removeCounter() {
+        serverSession().getEventManager().removeListener(counter);
+    }
+
+    // Полная страница: запрос страницы и подсчёт общего числа
+    @Test
+    void offsetPageLoadsRelationsWithPageQuery() {
+        Page<City> page = cityService.getCitiesPage(0, PAGE_SIZE, "id", "desc");
+
+        assertEquals(PAGE_SIZE, page.getContent().size());
+        page.getContent().forEach(CityQueryStatementCountTest::touchRelations);
+        assertEquals(2, statements.get());
+    }
+
+    @Test
+    void searchPageLoadsRelationsWithPageQuery() {
+        Page<City> page = cityService.searchCities(NAME, 0, PAGE_SIZE, "id", "asc");
+
+        assertEquals(PAGE_SIZE, page.getContent().size());
+        page.getContent().forEach(CityQueryStatementCountTest::touchRelations);
+        assertEquals(2, statements.get());
+    }
+
+    // Keyset-страница общего числа не считает: один запрос
+    @Test
+    void keysetPageLoadsRelationsWithPageQuery() {
+        String cursor = new CityCursor("id", "asc", firstId - 1, String.valueOf(firstId - 1)).encode();
+        CityCursorPage page = cityService.getCitiesAfter(cursor, PAGE_SIZE, "id", "asc");
+
+        assertEquals(PAGE_SIZE, page.cities().size());
+        page.cities().forEach(CityQueryStatementCountTest::touchRelations);
+        assertEquals(1, statements.get());
+    }
+
+    // Обращение к связям: не загруженные со страницей ушли бы здесь отдельными SELECT
+    private static void touchRelations(City city) {
+        assertNotNull(city.getCoordinates());
+        assertNotNull(city.getGovernor());
+        city.getCoordinates().getX();
+        city.getGovernor().getHeight();
+    }
+
+    private ServerSession serverSession() {
+        return entityManagerFactory.unwrap(JpaEntityManagerFactory.class).getServerSession();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.citymanagement.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Рейтинг на декартовом дереве против отсортированного списка: порядок (value по убыванию, id по возрастанию),
+ * место в рейтинге и первые n элементов после вставок и удалений.
+ */
+class OrderStatisticTreeTest {
+
+    private record Entry(int value, long id) {
+    }
+
+    private static final Comparator<Entry> RANKING = Comparator.comparingInt(Entry::value).reversed()
+            .thenComparingLong(Entry::id);
+
+    @Test
+    void equalValuesAreOrderedById() {
+        OrderStatisticTree tree = new OrderStatisticTree();
+        tree.insert(100, 7);
+        tree.insert(500, 3);
+        tree.insert(100, 2);
+        tree.insert(100, 5);
+
+        assertEquals(List.of(3L, 2L, 5L, 7L), tree.top(10));
+        assertEquals(1, tree.rank(500, 3));
+        assertEquals(2, tree.rank(100, 2));
+        assertEquals(3, tree.rank(100, 5));
+        assertEquals(4, tree.rank(100, 7));
+    }
+
+    @Test
+    void missingKeyHasNoRank() {
+        OrderStatisticTree tree = new OrderStatisticTree();
+        assertEquals(-1, tree.rank(1, 1));
+        tree.insert(10, 1);
+        assertEquals(-1, tree.rank(10, 2));
+        assertEquals(-1, tree.rank(11, 1));
+        tree.remove(10, 1);
+        assertEquals(-1, tree.rank(10, 1));
+        assertEquals(0, tree.size());
+    }
+
+    @Test
+    void topReturnsAtMostSize() {
+        OrderStatisticTree tree = new OrderStatisticTree();
+        tree.insert(1, 1);
+        tree.insert(2, 2);
+        assertEquals(List.of(2L, 1L), tree.top(5));
+        assertEquals(List.of(2L), tree.top(1));
+        assertEquals(List.of(), tree.top(0));
+    }
+
+    @Test
+    void matchesSortedReferenceAfterRandomInsertsAndRemovals() {
+        Random random = new Random(16);
+        OrderStatisticTree tree = new OrderStatisticTree();
+        List<Entry> reference = new ArrayList<>();
+        long nextId = 1;
+
+        for (int step = 0; step < 5000; step++) {
+            if (reference.isEmpty() || random.nextInt(3) > 0) {
+                // Узкий диапазон значений: много одинаковых value с разными id
+                Entry entry = new Entry(random.nextInt(50), nextId++);
+                tree.insert(entry.value(), entry.id());
+                reference.add(entry);
+            } else {
+                Entry entry = reference.remove(random.nextInt(reference.size()));
+                tree.remove(entry.value(), entry.id());
+            }
+
+            if (step % 250 == 0) {
+                assertMatches(reference, tree);
+            }
+        }
+        assertMatches(reference, tree);
+
+        for (Entry entry : new ArrayList<>(reference)) {
+            tree.remove(entry.value(), entry.id());
+            reference.remove(entry);
+        }
+        assertMatches(reference, tree);
+    }
+
+    private static void assertMatches(List<Entry> reference, OrderStatisticTree tree) {
+        List<Entry> sorted = new ArrayList<>(reference);
+        sorted.sort(RANKING);
+        assertEquals(sorted.size(), tree.size());
+
+        List<Long> ids = sorted.stream().map(Entry::id).toList();
+        assertEquals(ids, tree.top(sorted.size()));
+        for (int k = 1; k <= sorted.size(); k++) {
+            Entry entry = sorted.get(k - 1);
+            assertEquals(k, tree.rank(entry.value(), entry.id()));
+        }
+        // k-й элемент рейтинга - последний из первых k
+        for (int k = 1; k <= sorted.size(); k += 37) {
+            assertEquals(ids.get(k - 1), tree.top(k).get(k - 1));
+        }
+    }
+}